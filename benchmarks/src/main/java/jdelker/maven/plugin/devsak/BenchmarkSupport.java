@@ -0,0 +1,225 @@
+/*
+ * BenchmarkSupport
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Helpers shared by the benchmarks.
+ *
+ * Mojo parameters are injected by maven in a build. The benchmarks set them
+ * by reflection instead, and skip parameters a release does not know, so the
+ * same benchmarks run against older releases of the plugin. Classes and
+ * methods, which differ between releases, are reached by reflection as
+ * well, so the benchmarks compile against each of them.
+ *
+ * @author delker
+ */
+final class BenchmarkSupport {
+
+  /**
+   * Seed of all generated content, so each run measures the same data.
+   */
+  static final long SEED = 4711L;
+
+  private static final byte[] ALPHABET
+          = "abcdefghijklmnopqrstuvwxyz0123456789 <>=/\"\n".getBytes();
+
+  private BenchmarkSupport() {
+  }
+
+  /**
+   * Sets a field of the given object or its superclasses.
+   *
+   * @param target the object to modify
+   * @param name the name of the field
+   * @param value the value to set
+   * @return true, if the field exists
+   */
+  static boolean set(Object target, String name, Object value) {
+    for (Class<?> c = target.getClass(); c != null; c = c.getSuperclass()) {
+      try {
+        Field field = c.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+        return true;
+      } catch (NoSuchFieldException ex) {
+        // try the superclass
+      } catch (IllegalAccessException ex) {
+        throw new IllegalStateException("Cannot set " + name, ex);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates an instance of a class, which not every release has.
+   *
+   * @param className the name of the class
+   * @param parameterTypes the parameter types of the constructor
+   * @param args the arguments of the constructor
+   * @return the instance, or null if the release has no such class
+   */
+  static Object newInstance(String className, Class<?>[] parameterTypes, Object... args) {
+    Class<?> type;
+    try {
+      type = Class.forName(className);
+    } catch (ClassNotFoundException ex) {
+      return null;
+    }
+    try {
+      Constructor<?> constructor = type.getDeclaredConstructor(parameterTypes);
+      constructor.setAccessible(true);
+      return constructor.newInstance(args);
+    } catch (ReflectiveOperationException ex) {
+      throw new IllegalStateException("Cannot create " + className, ex);
+    }
+  }
+
+  /**
+   * Finds a method of the given class or its superclasses, regardless of its
+   * return type, which may differ between releases.
+   *
+   * @param type the class to search
+   * @param name the name of the method
+   * @param parameterTypes the parameter types of the method
+   * @return the accessible method
+   */
+  static Method method(Class<?> type, String name, Class<?>... parameterTypes) {
+    for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+      try {
+        Method method = c.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        return method;
+      } catch (NoSuchMethodException ex) {
+        // try the superclass
+      }
+    }
+    throw new IllegalStateException("No method " + name + " in " + type.getName());
+  }
+
+  /**
+   * Generates content, which compresses similar to text or class files.
+   *
+   * @param random the source of the content
+   * @param size the number of bytes
+   * @return the content
+   */
+  static byte[] content(Random random, int size) {
+    byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+    }
+    return data;
+  }
+
+  /**
+   * Writes a file of the given size with generated content.
+   *
+   * @param file the file to write
+   * @param size the number of bytes
+   * @param random the source of the content
+   * @throws IOException if the file could not be written
+   */
+  static void writeFile(Path file, long size, Random random) throws IOException {
+    Files.createDirectories(file.getParent());
+    byte[] block = content(random, 64 * 1024);
+    try (OutputStream out = Files.newOutputStream(file)) {
+      for (long written = 0; written < size; written += block.length) {
+        out.write(block, 0, (int) Math.min(block.length, size - written));
+      }
+    }
+  }
+
+  /**
+   * Deletes a directory including its content, if it exists.
+   *
+   * @param directory the directory to delete
+   * @throws IOException if the directory could not be deleted
+   */
+  static void deleteTree(Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /**
+   * A log, which reports warnings and errors only, so logging to the console
+   * does not distort the measurements.
+   */
+  static class QuietLog extends SystemStreamLog {
+
+    @Override
+    public boolean isDebugEnabled() {
+      return false;
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+      return false;
+    }
+
+    @Override
+    public void debug(CharSequence content) {
+    }
+
+    @Override
+    public void debug(CharSequence content, Throwable error) {
+    }
+
+    @Override
+    public void debug(Throwable error) {
+    }
+
+    @Override
+    public void info(CharSequence content) {
+    }
+
+    @Override
+    public void info(CharSequence content, Throwable error) {
+    }
+
+    @Override
+    public void info(Throwable error) {
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * CopyFileBenchmark
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures copying an artifact from the local repository to the output
+ * directory.
+ *
+ * @author delker
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CopyFileBenchmark {
+
+  /**
+   * Size of the artifact in bytes.
+   */
+  @Param({"65536", "67108864"})
+  public int size;
+
+  private Path directory;
+  private File source;
+  private File target;
+  private CopyWithDependenciesMojo mojo;
+
+  @Setup
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("devsak-copy");
+    source = directory.resolve("repository/artifact.jar").toFile();
+    target = directory.resolve("output/artifact.jar").toFile();
+    BenchmarkSupport.writeFile(source.toPath(), size, new Random(BenchmarkSupport.SEED));
+
+    mojo = new CopyWithDependenciesMojo();
+    mojo.setLog(new BenchmarkSupport.QuietLog());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    BenchmarkSupport.deleteTree(directory);
+  }
+
+  @Benchmark
+  public File copyFile() throws MojoExecutionException {
+    mojo.copyFile(source, target);
+    return target;
+  }
+}
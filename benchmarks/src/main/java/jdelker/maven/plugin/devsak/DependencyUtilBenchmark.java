@@ -0,0 +1,83 @@
+/*
+ * DependencyUtilBenchmark
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import jdelker.maven.plugin.devsak.util.DependencyUtil;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the formatting of file names and output directories, which is done
+ * for each copied artifact.
+ *
+ * @author delker
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DependencyUtilBenchmark {
+
+  private Artifact artifact;
+  private Artifact snapshot;
+  private File outputDirectory;
+
+  @Setup
+  public void setup() {
+    artifact = new DefaultArtifact("org.apache.maven", "maven-core", "3.6.3", Artifact.SCOPE_COMPILE,
+            "jar", null, new DefaultArtifactHandler("jar"));
+    snapshot = new DefaultArtifact("org.apache.maven", "maven-core", "3.6.4-20230101.120000-1",
+            Artifact.SCOPE_RUNTIME, "jar", "sources", new DefaultArtifactHandler("jar"));
+    outputDirectory = new File("target/dependencies");
+  }
+
+  @Benchmark
+  public String fileName() {
+    return DependencyUtil.getFormattedFileName(artifact, false);
+  }
+
+  @Benchmark
+  public String fileNameSnapshotClassified() {
+    return DependencyUtil.getFormattedFileName(snapshot, false, true, true, false);
+  }
+
+  @Benchmark
+  public File outputDirectorySubdirs() {
+    return DependencyUtil.getFormattedOutputDirectory(true, true, true, false, false, outputDirectory, artifact);
+  }
+
+  @Benchmark
+  public File outputDirectoryRepositoryLayout() {
+    return DependencyUtil.getFormattedOutputDirectory(false, false, false, true, false, outputDirectory, snapshot);
+  }
+}
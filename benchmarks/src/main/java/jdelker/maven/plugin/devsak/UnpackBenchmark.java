@@ -0,0 +1,149 @@
+/*
+ * UnpackBenchmark
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.inject.Provider;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.codehaus.plexus.archiver.UnArchiver;
+import org.codehaus.plexus.archiver.manager.DefaultArchiverManager;
+import org.codehaus.plexus.archiver.zip.ZipUnArchiver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the unpack goal with a zip of many small entries and a zip of few
+ * large entries.
+ *
+ * @author delker
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UnpackBenchmark {
+
+  /**
+   * small: 2000 entries of 2 KiB; large: 8 entries of 16 MiB, every other
+   * one stored.
+   */
+  @Param({"small", "large"})
+  public String archive;
+
+  /**
+   * Number of entries extracted concurrently, if the release supports it.
+   */
+  @Param({"1", "4"})
+  public int entryThreads;
+
+  private Path directory;
+  private Path outputDirectory;
+  private UnpackMojo mojo;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("devsak-unpack");
+    Path archives = directory.resolve("archives");
+    Files.createDirectories(archives);
+    Random random = new Random(BenchmarkSupport.SEED);
+    if ("small".equals(archive)) {
+      writeZip(archives.resolve("small.zip"), 2000, 2 * 1024, random);
+    } else {
+      writeZip(archives.resolve("large.zip"), 8, 16 * 1024 * 1024, random);
+    }
+    outputDirectory = directory.resolve("output");
+
+    FileSet fileSet = new FileSet();
+    fileSet.setDirectory(archives.toString());
+    fileSet.addInclude("*.zip");
+
+    DefaultArchiverManager archiverManager = new DefaultArchiverManager(Collections.emptyMap(),
+            Collections.singletonMap("zip", (Provider<UnArchiver>) ZipUnArchiver::new), Collections.emptyMap());
+
+    mojo = new UnpackMojo();
+    mojo.setLog(new BenchmarkSupport.QuietLog());
+    BenchmarkSupport.set(mojo, "fileSet", fileSet);
+    BenchmarkSupport.set(mojo, "outputDirectory", outputDirectory.toFile());
+    BenchmarkSupport.set(mojo, "markersDirectory", directory.resolve("markers").toFile());
+    BenchmarkSupport.set(mojo, "threads", 1);
+    BenchmarkSupport.set(mojo, "entryThreads", entryThreads);
+    BenchmarkSupport.set(mojo, "archiverManager", archiverManager);
+  }
+
+  /**
+   * Each invocation unpacks into an empty directory.
+   */
+  @Setup(Level.Invocation)
+  public void clean() throws IOException {
+    BenchmarkSupport.deleteTree(outputDirectory);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkSupport.deleteTree(directory);
+  }
+
+  @Benchmark
+  public void unpack() throws MojoExecutionException, MojoFailureException {
+    mojo.execute();
+  }
+
+  private static void writeZip(Path file, int entries, int size, Random random) throws IOException {
+    try (OutputStream out = Files.newOutputStream(file); ZipOutputStream zip = new ZipOutputStream(out)) {
+      for (int i = 0; i < entries; i++) {
+        byte[] content = BenchmarkSupport.content(random, size);
+        ZipEntry entry = new ZipEntry("dir" + (i % 20) + "/entry" + i + ".txt");
+        if (entries < 100 && i % 2 == 1) {
+          CRC32 crc = new CRC32();
+          crc.update(content);
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(size);
+          entry.setCompressedSize(size);
+          entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+      }
+    }
+  }
+}
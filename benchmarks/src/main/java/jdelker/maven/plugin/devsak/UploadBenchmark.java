@@ -0,0 +1,151 @@
+/*
+ * UploadBenchmark
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.repository.MavenArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures uploading a file to an HTTP server in the same process, which
+ * discards the content. So the plugin and the HTTP client are measured, but
+ * no network.
+ *
+ * @author delker
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UploadBenchmark {
+
+  /**
+   * Size of the uploaded file in bytes.
+   */
+  @Param({"65536", "16777216"})
+  public int size;
+
+  private Path directory;
+  private File file;
+  private HttpServer server;
+  private String targetUrl;
+  private UploadMojo mojo;
+  private CloseableHttpClient client;
+  private Method uploadFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, MojoExecutionException {
+    directory = Files.createTempDirectory("devsak-upload");
+    file = directory.resolve("artifact.jar").toFile();
+    BenchmarkSupport.writeFile(file.toPath(), size, new Random(BenchmarkSupport.SEED));
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      byte[] buffer = new byte[64 * 1024];
+      try (InputStream in = exchange.getRequestBody()) {
+        while (in.read(buffer) >= 0) {
+          // discard
+        }
+      }
+      exchange.sendResponseHeaders(201, -1);
+      exchange.close();
+    });
+    server.start();
+    String serverUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    targetUrl = serverUrl + "/repository/artifact.jar";
+
+    mojo = new UploadMojo();
+    mojo.setLog(new BenchmarkSupport.QuietLog());
+    BenchmarkSupport.set(mojo, "serverUrl", serverUrl);
+    BenchmarkSupport.set(mojo, "serverPath", "/repository/");
+    BenchmarkSupport.set(mojo, "threads", 1);
+    BenchmarkSupport.set(mojo, "keepAlive", 30000L);
+    BenchmarkSupport.set(mojo, "expectContinueThreshold", 1048576L);
+    BenchmarkSupport.set(mojo, "expectContinueTimeout", 3000);
+    BenchmarkSupport.set(mojo, "errorBodyLimit", 4096);
+    BenchmarkSupport.set(mojo, "retries", 0);
+    BenchmarkSupport.set(mojo, "retryDelay", 1000L);
+    BenchmarkSupport.set(mojo, "maxRetryDelay", 30000L);
+    BenchmarkSupport.set(mojo, "authCache", new BasicAuthCache());
+
+    ArtifactRepositoryPolicy policy = new ArtifactRepositoryPolicy();
+    client = mojo.getHttpClient(
+            new MavenArtifactRepository("benchmark", serverUrl, new DefaultRepositoryLayout(), policy, policy));
+    uploadFile = BenchmarkSupport.method(UploadMojo.class, "uploadFile",
+            CloseableHttpClient.class, File.class, String.class);
+  }
+
+  /**
+   * The progress of releases, which report it, records each transfer, so it
+   * starts afresh with each iteration to keep its footprint constant.
+   */
+  @Setup(Level.Iteration)
+  public void resetProgress() {
+    Object progress = BenchmarkSupport.newInstance("jdelker.maven.plugin.devsak.util.TransferProgress",
+            new Class<?>[]{Log.class, String.class, long.class}, new BenchmarkSupport.QuietLog(), "Uploaded", 0L);
+    if (progress != null) {
+      BenchmarkSupport.set(mojo, "progress", progress);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    client.close();
+    server.stop(0);
+    BenchmarkSupport.deleteTree(directory);
+  }
+
+  /**
+   * Invoked by reflection, as the method returns the ETag in newer releases
+   * only. Compared to the upload, the invocation is negligible.
+   */
+  @Benchmark
+  public Object uploadFile() throws ReflectiveOperationException {
+    return uploadFile.invoke(mojo, client, file, targetUrl);
+  }
+}
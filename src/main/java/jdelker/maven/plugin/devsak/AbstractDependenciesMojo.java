@@ -0,0 +1,88 @@
+/*
+ * AbstractDependenciesMojo
+ *
+ * Copyright (c) 2022-2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak;
+
+import java.io.File;
+import java.util.List;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolver;
+import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolverException;
+
+/**
+ * Base for goals, which resolve artifacts including their dependencies from
+ * the repository.
+ *
+ * @author delker
+ */
+public abstract class AbstractDependenciesMojo extends AbstractMojo {
+
+  /**
+   * Collection of ArtifactItems to work on.
+   *
+   * See <a href="./usage.html">Usage</a> for details.
+   */
+  @Parameter
+  protected List<ArtifactItem> artifactItems;
+
+  /**
+   * Directory to store marker files
+   */
+  @Parameter(defaultValue = "${project.build.directory}/.markers", required = true)
+  protected File markersDirectory;
+
+  /**
+   * The Maven session
+   */
+  @Parameter(defaultValue = "${session}", readonly = true, required = true)
+  protected MavenSession session;
+
+  @Component
+  private DependencyResolver dependencyResolver;
+
+  /**
+   * Resolves the artifact and all its dependencies from the repository. The
+   * files of the resolved artifacts are located in the local repository.
+   *
+   * @param artifactItem containing the information about the Artifact
+   * @return the resolved artifacts, which pass the filters of the item
+   * @throws DependencyResolverException if the artifacts could not be resolved
+   */
+  protected List<Artifact> resolveArtifacts(ArtifactItem artifactItem)
+          throws DependencyResolverException {
+    return new ArtifactItemResolver(dependencyResolver, getProjectBuildingRequest()).resolve(artifactItem);
+  }
+
+  /**
+   * Generate a new ProjectBuildingRequest populated from the current session
+   * and the current project remote repositories, used to resolve artifacts.
+   *
+   * @return ProjectBuildingRequest
+   */
+  public ProjectBuildingRequest getProjectBuildingRequest() {
+    ProjectBuildingRequest pbr
+            = new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
+
+    return pbr;
+  }
+}
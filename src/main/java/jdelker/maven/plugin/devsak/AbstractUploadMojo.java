@@ -0,0 +1,1489 @@
+/*
+ * Copyright 2023 jdelker.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Credits for this code goes to:
+ *  - https://github.com/lopht/upload-maven-plugin/
+ *  - https://github.com/sonatype/maven-upload-plugin
+ */
+package jdelker.maven.plugin.devsak;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLException;
+import jdelker.maven.plugin.devsak.util.ArchiveEntity;
+import jdelker.maven.plugin.devsak.util.DigestingEntity;
+import jdelker.maven.plugin.devsak.util.TransferProgress;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.ParseException;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.ProxyAuthenticationStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.repository.Authentication;
+import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.repository.Proxy;
+import org.apache.maven.repository.RepositorySystem;
+
+/**
+ * Base for goals, which upload files to a remote repository via HTTP.
+ *
+ */
+public abstract class AbstractUploadMojo
+        extends AbstractMojo {
+
+  /**
+   * The server Id in settings.xml with credentials to use.
+   *
+   */
+  @Parameter(property = "upload.serverId")
+  protected String serverId;
+
+  /**
+   * The base URL of the server, ie http://server.example.com/.
+   *
+   */
+  @Parameter(property = "upload.serverUrl")
+  protected String serverUrl;
+
+  /**
+   * The server path where the file will be uploaded, ie path/to/file.ext. Will
+   * be appended to the <i>serverUrl</i> parameter.
+   *
+   */
+  @Parameter(property = "upload.serverPath", defaultValue="/")
+  private String serverPath;
+
+  @Parameter(property = "session")
+  protected MavenSession session;
+
+  /**
+   * Set to true to skip execution.
+   *
+   */
+  @Parameter(property = "upload.skip", defaultValue = "false")
+  protected boolean skip;
+
+  /**
+   * Set to true if the server requires credentials in the initial request.
+   *
+   */
+  @Parameter(property = "upload.preemptiveAuth", defaultValue = "false")
+  protected boolean preemptiveAuth;
+
+  /**
+   * Custom HTTP headers to add to each request.
+   *
+   */
+  @Parameter
+  protected Map<String, String> headers;
+
+  /**
+   * Use POST instead of PUT
+   *
+   */
+  @Parameter(property = "upload.post", defaultValue = "false")
+  protected boolean usePOST;
+
+  /**
+   * Content types by file extension, in addition to or overriding the
+   * built-in ones, ie. <code>&lt;json&gt;application/json&lt;/json&gt;</code>.
+   *
+   */
+  @Parameter
+  protected Map<String, String> contentTypes;
+
+  /**
+   * If true, files matching <i>gzipTypes</i> are compressed while they are
+   * sent, with <code>Content-Encoding: gzip</code>. The server must support
+   * compressed request bodies.
+   *
+   */
+  @Parameter(property = "upload.gzip", defaultValue = "false")
+  protected boolean gzip;
+
+  /**
+   * Content types (ie. <code>text/*</code>) or file name patterns (ie.
+   * <code>*.log</code>) of the files to compress, if <i>gzip</i> is set.
+   *
+   */
+  @Parameter(property = "upload.gzipTypes",
+          defaultValue = "text/*,application/xml,application/json,application/javascript,image/svg+xml")
+  protected String[] gzipTypes;
+
+  /**
+   * Uploads small files in batches instead of one request per file, if the
+   * server supports it. Supported modes are <code>none</code>,
+   * <code>multipart</code> (one multipart/form-data POST per batch),
+   * <code>zip</code> and <code>tar</code> (one archive per batch, which is
+   * expanded by the server).
+   *
+   */
+  @Parameter(property = "upload.batchMode", defaultValue = "none")
+  protected String batchMode;
+
+  /**
+   * Maximum number of files per batch.
+   *
+   */
+  @Parameter(property = "upload.batchSize", defaultValue = "100")
+  protected int batchSize;
+
+  /**
+   * Files larger than this size in bytes are uploaded individually, even if
+   * <i>batchMode</i> is set.
+   *
+   */
+  @Parameter(property = "upload.batchMaxFileSize", defaultValue = "1048576")
+  protected long batchMaxFileSize;
+
+  /**
+   * Name of the form field for each file of a <code>multipart</code> batch.
+   * <code>{n}</code> is replaced by the position of the file in the batch,
+   * starting at 1 (ie. <code>raw.asset{n}</code>).
+   *
+   */
+  @Parameter(property = "upload.batchFieldName", defaultValue = "file")
+  protected String batchFieldName;
+
+  /**
+   * If set, the relative path of each file of a <code>multipart</code> batch
+   * is also sent as text in a form field of this name, with <code>{n}</code>
+   * replaced as in <i>batchFieldName</i> (ie.
+   * <code>raw.asset{n}.filename</code>).
+   *
+   */
+  @Parameter(property = "upload.batchFilenameFieldName")
+  protected String batchFilenameFieldName;
+
+  /**
+   * Additional text form fields to send with each <code>multipart</code>
+   * batch (ie. <code>raw.directory</code>).
+   *
+   */
+  @Parameter
+  protected Map<String, String> batchFormFields;
+
+  /**
+   * Number of files to upload concurrently.
+   *
+   */
+  @Parameter(property = "upload.threads", defaultValue = "1")
+  protected int threads;
+
+  /**
+   * If true, stop at the first failed upload. Otherwise all files are
+   * attempted and the failures are reported together.
+   *
+   */
+  @Parameter(property = "upload.failFast", defaultValue = "false")
+  protected boolean failFast;
+
+  /**
+   * Maximum time in milliseconds to keep an idle connection alive for reuse,
+   * if the server does not announce a keep-alive timeout itself.
+   *
+   */
+  @Parameter(property = "upload.keepAlive", defaultValue = "30000")
+  protected long keepAlive;
+
+  /**
+   * If true, files are only uploaded if their content differs from what has
+   * been uploaded before. The SHA-256 digest of each uploaded file is recorded
+   * in an upload manifest in <i>markersDirectory</i>.
+   *
+   */
+  @Parameter(property = "upload.skipUnchanged", defaultValue = "false")
+  protected boolean skipUnchanged;
+
+  /**
+   * How to verify the remote state of a file, if <i>skipUnchanged</i> is set:
+   * <ul>
+   * <li><code>none</code> - trust the upload manifest only</li>
+   * <li><code>etag</code> - additionally require the remote ETag (HEAD) to be
+   * the one returned by the last upload</li>
+   * <li><code>sidecar</code> - compare with the remote <code>.sha256</code>
+   * file next to the target, regardless of the upload manifest</li>
+   * </ul>
+   *
+   */
+  @Parameter(property = "upload.remoteCheck", defaultValue = "none")
+  protected String remoteCheck;
+
+  /**
+   * Checksums to upload next to each file, ie. <code>md5</code>,
+   * <code>sha1</code>, <code>sha256</code> or <code>sha512</code>. The
+   * checksums are computed while the file is sent and uploaded as sidecar
+   * files with the algorithm as additional extension, ie.
+   * <code>file.ext.sha1</code>.
+   *
+   */
+  @Parameter(property = "upload.checksums")
+  protected String[] checksums;
+
+  /**
+   * If true, each file is first deployed by its checksums only
+   * (<code>X-Checksum-Deploy</code>), as supported by some repository
+   * managers. The content is only sent, if the server does not know it yet.
+   * Not applicable to POST requests.
+   *
+   */
+  @Parameter(property = "upload.checksumDeploy", defaultValue = "false")
+  protected boolean checksumDeploy;
+
+  /**
+   * Number of times a request is retried after a transient failure, ie. a
+   * server error (5xx), too many requests (429) or a broken connection. Only
+   * idempotent requests are retried, so this does not apply to POST.
+   *
+   */
+  @Parameter(property = "upload.retries", defaultValue = "0")
+  protected int retries;
+
+  /**
+   * Initial delay in milliseconds before a request is retried. The delay is
+   * doubled on each further retry and randomized by up to half of its value.
+   * A <code>Retry-After</code> header of the server takes precedence.
+   *
+   */
+  @Parameter(property = "upload.retryDelay", defaultValue = "1000")
+  protected long retryDelay;
+
+  /**
+   * Maximum delay in milliseconds before a request is retried.
+   *
+   */
+  @Parameter(property = "upload.maxRetryDelay", defaultValue = "30000")
+  protected long maxRetryDelay;
+
+  /**
+   * Files larger than this number of bytes are sent with
+   * <code>Expect: 100-continue</code>, so the server can reject the request
+   * (ie. for missing authentication or permissions) before the content is
+   * transmitted. A negative value disables this.
+   *
+   */
+  @Parameter(property = "upload.expectContinueThreshold", defaultValue = "1048576")
+  protected long expectContinueThreshold;
+
+  /**
+   * Time in milliseconds to wait for the server's <code>100 Continue</code>
+   * response, before the content is sent anyway.
+   *
+   */
+  @Parameter(property = "upload.expectContinueTimeout", defaultValue = "3000")
+  protected int expectContinueTimeout;
+
+  /**
+   * Maximum number of bytes of an error response to log. The rest of the
+   * response is discarded without reading it into memory.
+   *
+   */
+  @Parameter(property = "upload.errorBodyLimit", defaultValue = "4096")
+  protected int errorBodyLimit;
+
+  /**
+   * Interval in milliseconds between progress reports while uploading. Set
+   * to 0 to log the final summary only.
+   *
+   */
+  @Parameter(property = "upload.progressInterval", defaultValue = "10000")
+  protected long progressInterval;
+
+  /**
+   * Directory to store marker files.
+   *
+   */
+  @Parameter(defaultValue = "${project.build.directory}/.markers")
+  protected File markersDirectory;
+
+  @Component
+  protected RepositorySystem repositorySystem;
+
+  @Component
+  protected ArtifactRepositoryLayout repositoryLayout;
+
+  /**
+   * Authentication state shared by all requests, so a challenge is answered
+   * only once per host.
+   */
+  private AuthCache authCache;
+
+  /**
+   * Digest and ETag of previously uploaded files, keyed by target URL and
+   * local file.
+   */
+  private final Properties uploadManifest = new Properties();
+
+  private final AtomicInteger skippedFiles = new AtomicInteger();
+
+  private TransferProgress progress;
+
+  public static final String MANIFEST_FILENAME = "upload-manifest.properties";
+
+  /**
+   * Supported checksum extensions and their digest algorithms.
+   */
+  private static final Map<String, String> CHECKSUM_ALGORITHMS = new LinkedHashMap<>();
+
+  static {
+    CHECKSUM_ALGORITHMS.put("md5", "MD5");
+    CHECKSUM_ALGORITHMS.put("sha1", "SHA-1");
+    CHECKSUM_ALGORITHMS.put("sha256", "SHA-256");
+    CHECKSUM_ALGORITHMS.put("sha512", "SHA-512");
+  }
+
+  /**
+   * Built-in content types by file extension.
+   */
+  private static final Map<String, ContentType> CONTENT_TYPES = new HashMap<>();
+
+  static {
+    CONTENT_TYPES.put("xml", ContentType.APPLICATION_XML);
+    CONTENT_TYPES.put("pom", ContentType.APPLICATION_XML);
+    CONTENT_TYPES.put("json", ContentType.APPLICATION_JSON);
+    CONTENT_TYPES.put("txt", ContentType.TEXT_PLAIN);
+    CONTENT_TYPES.put("log", ContentType.TEXT_PLAIN);
+    CONTENT_TYPES.put("html", ContentType.TEXT_HTML);
+    CONTENT_TYPES.put("htm", ContentType.TEXT_HTML);
+    CONTENT_TYPES.put("css", ContentType.create("text/css"));
+    CONTENT_TYPES.put("csv", ContentType.create("text/csv"));
+    CONTENT_TYPES.put("js", ContentType.create("application/javascript"));
+    CONTENT_TYPES.put("svg", ContentType.APPLICATION_SVG_XML);
+    CONTENT_TYPES.put("zip", ContentType.create("application/zip"));
+    CONTENT_TYPES.put("jar", ContentType.create("application/java-archive"));
+    CONTENT_TYPES.put("gz", ContentType.create("application/gzip"));
+  }
+
+  /**
+   * Maximum number of bytes drained from a response, to reuse its connection.
+   */
+  private static final long DRAIN_LIMIT = 64 * 1024;
+
+  private static final String CHECKSUM_DEPLOY_HEADER = "X-Checksum-Deploy";
+
+  /**
+   * Digest algorithms and their headers used for checksum deploys.
+   */
+  private static final Map<String, String> CHECKSUM_DEPLOY_HEADERS = new LinkedHashMap<>();
+
+  static {
+    CHECKSUM_DEPLOY_HEADERS.put("SHA-1", "X-Checksum-Sha1");
+    CHECKSUM_DEPLOY_HEADERS.put("SHA-256", "X-Checksum-Sha256");
+  }
+
+  private static final List<String> BATCH_MODES = Arrays.asList(
+          "none", "multipart", ArchiveEntity.ZIP, ArchiveEntity.TAR);
+
+  @Override
+  public void execute()
+          throws MojoExecutionException, MojoFailureException {
+
+    if (skip) {
+      getLog().info("Skipping execution per configuration");
+      return;
+    }
+
+    ArtifactRepository repository = getArtifactRepository();
+
+    String url = getTargetUrl(repository);
+
+    authCache = getAuthCache(url);
+
+    if (checksums != null) {
+      for (String checksum : checksums) {
+        if (!CHECKSUM_ALGORITHMS.containsKey(checksum.trim().toLowerCase())) {
+          throw new MojoExecutionException("Unsupported checksum: " + checksum
+                  + ", supported are " + CHECKSUM_ALGORITHMS.keySet());
+        }
+      }
+    }
+
+    if (!BATCH_MODES.contains(batchMode)) {
+      throw new MojoExecutionException("Unsupported batchMode: " + batchMode
+              + ", supported are " + BATCH_MODES);
+    }
+    if (isBatching() && ((checksums != null && checksums.length > 0) || checksumDeploy)) {
+      getLog().warn("Checksums are not supported for batched files, only for files uploaded individually");
+    }
+
+    if (skipUnchanged) {
+      readManifest();
+    }
+
+    Iterable<File> filesToUpload = getFilesToUpload();
+
+    progress = new TransferProgress(getLog(), "Uploaded", progressInterval);
+    if (filesToUpload instanceof List) {
+      long expectedBytes = 0;
+      for (File f : filesToUpload) {
+        expectedBytes += f.length();
+      }
+      progress.setExpectedBytes(expectedBytes);
+    }
+
+    try (CloseableHttpClient client = getHttpClient(repository)) {
+      uploadFiles(client, filesToUpload, url);
+      progress.summary();
+    } catch (IOException ex) {
+      getLog().warn("Failed to close HTTP client: " + ex.getMessage());
+    } finally {
+      progress.close();
+      if (skipUnchanged) {
+        writeManifest();
+        getLog().info("Skipped " + skippedFiles.get() + " unchanged file(s)");
+      }
+    }
+  }
+
+  /**
+   * Uploads the given files using a pool of <i>threads</i> workers, which
+   * share the given client. The files are consumed as the workers get
+   * ready, so they may be produced by a concurrent scan.
+   *
+   * @param client the shared HTTP client
+   * @param files the files to upload
+   * @param targetUrl the URL to upload to
+   * @throws MojoExecutionException if any of the uploads failed
+   */
+  protected void uploadFiles(CloseableHttpClient client, Iterable<File> files, String targetUrl)
+          throws MojoExecutionException {
+    int workers = Math.max(1, threads);
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    CompletionService<File> completionService = new ExecutorCompletionService<>(executor);
+    List<Throwable> failures = new ArrayList<>();
+    int submitted = 0;
+    int completed = 0;
+    List<File> batch = new ArrayList<>();
+
+    Iterable<File> schedule = files;
+    if (isPreservePaths() && threads > 1 && files instanceof List) {
+      schedule = interleaveDirectories((List<File>) files);
+    }
+
+    try {
+      for (File f : schedule) {
+        if (failFast && !failures.isEmpty()) {
+          break;
+        }
+        String fileUrl = isPreservePaths() ? getTargetUrl(targetUrl, f) : targetUrl;
+
+        Callable<File> task;
+        if (isBatching() && f.length() <= batchMaxFileSize) {
+          batch.add(f);
+          if (batch.size() < batchSize) {
+            continue;
+          }
+          List<File> batchFiles = batch;
+          batch = new ArrayList<>();
+          task = () -> {
+            processBatch(client, batchFiles, targetUrl);
+            return batchFiles.get(0);
+          };
+        } else {
+          task = () -> {
+            processFile(client, f, fileUrl);
+            return f;
+          };
+        }
+
+        // keep only a few uploads pending, so a streaming scan is not drained
+        // into the executor's queue
+        while (submitted - completed >= 2 * workers) {
+          collectResult(completionService.take(), failures);
+          completed++;
+        }
+        completionService.submit(task);
+        submitted++;
+
+        Future<File> result;
+        while ((result = completionService.poll()) != null) {
+          collectResult(result, failures);
+          completed++;
+        }
+      }
+
+      if (!batch.isEmpty() && !(failFast && !failures.isEmpty())) {
+        List<File> batchFiles = batch;
+        completionService.submit(() -> {
+          processBatch(client, batchFiles, targetUrl);
+          return batchFiles.get(0);
+        });
+        submitted++;
+      }
+
+      while (completed < submitted && !(failFast && !failures.isEmpty())) {
+        collectResult(completionService.take(), failures);
+        completed++;
+      }
+    } catch (UncheckedIOException ex) {
+      throw new MojoExecutionException(ex.getMessage(), ex.getCause());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Upload interrupted", ex);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    if (!failures.isEmpty()) {
+      MojoExecutionException ex = new MojoExecutionException(
+              (failFast ? "Upload failed" : failures.size() + " of " + submitted + " uploads failed")
+              + ": " + failures.get(0).getMessage(), failures.get(0));
+      for (Throwable failure : failures.subList(1, failures.size())) {
+        ex.addSuppressed(failure);
+      }
+      throw ex;
+    }
+  }
+
+  private void collectResult(Future<File> result, List<Throwable> failures)
+          throws InterruptedException {
+    try {
+      result.get();
+    } catch (ExecutionException ex) {
+      failures.add(ex.getCause());
+      getLog().error(ex.getCause().getMessage());
+    }
+  }
+
+  /**
+   * Uploads a single file, unless <i>skipUnchanged</i> is set and the file
+   * has not changed since its last upload.
+   *
+   * @param client the shared HTTP client
+   * @param file the file to upload
+   * @param targetUrl the URL to upload to
+   * @throws MojoExecutionException if the upload failed
+   */
+  protected void processFile(CloseableHttpClient client, File file, String targetUrl)
+          throws MojoExecutionException {
+    if (!skipUnchanged) {
+      uploadFile(client, file, targetUrl);
+      return;
+    }
+
+    String digest = getDigest(file);
+    if (isUnchanged(client, file, targetUrl, digest)) {
+      getLog().info("Skipping unchanged " + file.getAbsolutePath());
+      skippedFiles.incrementAndGet();
+      return;
+    }
+
+    String etag = uploadFile(client, file, targetUrl);
+    uploadManifest.setProperty(getManifestKey(file, targetUrl), etag != null ? digest + " " + etag : digest);
+  }
+
+  /**
+   * Uploads a batch of files in a single request according to
+   * <i>batchMode</i>. With <i>skipUnchanged</i>, unchanged files are removed
+   * from the batch first.
+   *
+   * @param client the HTTP client
+   * @param files the files of the batch
+   * @param targetUrl the URL to upload the batch to
+   * @throws MojoExecutionException if the upload failed
+   */
+  protected void processBatch(CloseableHttpClient client, List<File> files, String targetUrl)
+          throws MojoExecutionException {
+    Map<File, String> digests = new LinkedHashMap<>();
+    List<File> batch = files;
+    if (skipUnchanged) {
+      batch = new ArrayList<>();
+      for (File f : files) {
+        String fileUrl = isPreservePaths() ? getTargetUrl(targetUrl, f) : targetUrl;
+        String digest = getDigest(f);
+        if (isUnchanged(client, f, fileUrl, digest)) {
+          getLog().info("Skipping unchanged " + f.getAbsolutePath());
+          skippedFiles.incrementAndGet();
+        } else {
+          batch.add(f);
+          digests.put(f, digest);
+        }
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+    }
+
+    String name = "batch of " + batch.size() + " file(s)";
+    getLog().info("Uploading " + name + " to " + targetUrl);
+    if (getLog().isDebugEnabled()) {
+      for (File f : batch) {
+        getLog().debug("  " + getRelativePath(f));
+      }
+    }
+
+    long size = 0;
+    for (File f : batch) {
+      size += f.length();
+    }
+    TransferProgress.Transfer transfer = progress.start(name, size);
+    try {
+      if ("multipart".equals(batchMode)) {
+        MultipartEntityBuilder builder = MultipartEntityBuilder.create();
+        ContentType text = ContentType.TEXT_PLAIN.withCharset(StandardCharsets.UTF_8);
+        if (batchFormFields != null) {
+          for (Map.Entry<String, String> field : batchFormFields.entrySet()) {
+            builder.addTextBody(field.getKey(), field.getValue(), text);
+          }
+        }
+        int n = 1;
+        for (File f : batch) {
+          String position = Integer.toString(n++);
+          builder.addBinaryBody(batchFieldName.replace("{n}", position), f,
+                  getContentType(f, ContentType.APPLICATION_OCTET_STREAM), getRelativePath(f));
+          if (batchFilenameFieldName != null && !batchFilenameFieldName.isEmpty()) {
+            builder.addTextBody(batchFilenameFieldName.replace("{n}", position), getRelativePath(f), text);
+          }
+        }
+        // multipart is always sent as form POST
+        upload(client, new HttpPost(targetUrl), track(builder.build(), transfer), name, Collections.emptyMap());
+      } else {
+        upload(client, track(new ArchiveEntity(batch, this::getRelativePath, batchMode), transfer), targetUrl,
+                name, Collections.emptyMap());
+      }
+      transfer.done();
+    } catch (MojoExecutionException e) {
+      transfer.failed();
+      throw e;
+    }
+
+    for (Map.Entry<File, String> digest : digests.entrySet()) {
+      File f = digest.getKey();
+      String fileUrl = isPreservePaths() ? getTargetUrl(targetUrl, f) : targetUrl;
+      uploadManifest.setProperty(getManifestKey(f, fileUrl), digest.getValue());
+    }
+  }
+
+  /**
+   * @param file the file to upload
+   * @param defaultType the content type to use for unknown extensions
+   * @return the content type of the file, as configured in
+   * <i>contentTypes</i> or built-in
+   * @throws MojoExecutionException if a configured content type is invalid
+   */
+  protected ContentType getContentType(File file, ContentType defaultType)
+          throws MojoExecutionException {
+    String name = file.getName();
+    int dot = name.lastIndexOf('.');
+    if (dot < 0) {
+      return defaultType;
+    }
+    String extension = name.substring(dot + 1).toLowerCase();
+    if (contentTypes != null && contentTypes.containsKey(extension)) {
+      try {
+        return ContentType.parse(contentTypes.get(extension));
+      } catch (ParseException | UnsupportedCharsetException e) {
+        throw new MojoExecutionException("Invalid content type for " + extension + ": "
+                + contentTypes.get(extension), e);
+      }
+    }
+    return CONTENT_TYPES.getOrDefault(extension, defaultType);
+  }
+
+  /**
+   * @param file the file to upload
+   * @param contentType its content type, or null
+   * @return true, if the file matches any of the <i>gzipTypes</i>
+   */
+  protected boolean isCompressible(File file, ContentType contentType) {
+    for (String type : gzipTypes) {
+      String pattern = type.trim().toLowerCase();
+      if (pattern.startsWith("*.")) {
+        if (file.getName().toLowerCase().endsWith(pattern.substring(1))) {
+          return true;
+        }
+      } else if (contentType != null) {
+        String mimeType = contentType.getMimeType().toLowerCase();
+        if (pattern.endsWith("/*") ? mimeType.startsWith(pattern.substring(0, pattern.length() - 1))
+                : mimeType.equals(pattern)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counts the bytes of the entity as they are sent.
+   */
+  private HttpEntity track(HttpEntity entity, TransferProgress.Transfer transfer) {
+    return new HttpEntityWrapper(entity) {
+      @Override
+      public void writeTo(OutputStream outStream) throws IOException {
+        wrappedEntity.writeTo(transfer.wrap(outStream));
+      }
+    };
+  }
+
+  private boolean isBatching() {
+    return !"none".equals(batchMode);
+  }
+
+  private String getDigest(File file) throws MojoExecutionException {
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      return DigestUtils.sha256Hex(in);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not read file " + file.getName() + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Checks whether a file is unchanged according to the upload manifest and
+   * the configured <i>remoteCheck</i>.
+   *
+   * @param client the shared HTTP client
+   * @param file the local file
+   * @param targetUrl the URL the file would be uploaded to
+   * @param digest the SHA-256 digest of the local file
+   * @return true, if the upload can be skipped
+   * @throws MojoExecutionException if <i>remoteCheck</i> is invalid
+   */
+  protected boolean isUnchanged(CloseableHttpClient client, File file, String targetUrl, String digest)
+          throws MojoExecutionException {
+    String check = Objects.toString(remoteCheck, "none").toLowerCase();
+    if ("sidecar".equals(check)) {
+      String remoteDigest = getRemoteText(client, new HttpGet(targetUrl + ".sha256"));
+      // sidecars may be in "sha256sum" format, ie "<digest>  <filename>"
+      return remoteDigest != null && remoteDigest.trim().split("\\s+")[0].equalsIgnoreCase(digest);
+    }
+
+    String recorded = uploadManifest.getProperty(getManifestKey(file, targetUrl));
+    if (recorded == null) {
+      return false;
+    }
+    String[] entry = recorded.split(" ", 2);
+    if (!entry[0].equals(digest)) {
+      return false;
+    }
+
+    switch (check) {
+      case "none":
+        return true;
+      case "etag":
+        HttpHead head = new HttpHead(targetUrl);
+        try (CloseableHttpResponse response = execute(client, head)) {
+          int status = response.getStatusLine().getStatusCode();
+          Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+          return status >= 200 && status <= 299
+                  && (entry.length < 2 || (etag != null && entry[1].equals(etag.getValue())));
+        } catch (IOException e) {
+          getLog().debug("Failed to check " + targetUrl, e);
+          return false;
+        }
+      default:
+        throw new MojoExecutionException("Unsupported remoteCheck: " + remoteCheck);
+    }
+  }
+
+  /**
+   * Fetches a small text resource.
+   *
+   * @param client the shared HTTP client
+   * @param request the request to execute
+   * @return the response body or null, if not available
+   */
+  private String getRemoteText(CloseableHttpClient client, HttpGet request) {
+    try (CloseableHttpResponse response = execute(client, request)) {
+      int status = response.getStatusLine().getStatusCode();
+      if (status >= 200 && status <= 299) {
+        // a checksum file is small, anything larger is not one
+        String text = readBody(response, 1025);
+        return text != null && text.length() <= 1024 ? text : null;
+      }
+      release(response);
+    } catch (IOException e) {
+      getLog().debug("Failed to fetch " + request.getURI(), e);
+    }
+    return null;
+  }
+
+  private String getManifestKey(File file, String targetUrl) {
+    return targetUrl + " " + file.getAbsolutePath();
+  }
+
+  private void readManifest() throws MojoFailureException {
+    File manifestFile = new File(markersDirectory, MANIFEST_FILENAME);
+    if (manifestFile.exists()) {
+      try (InputStream in = Files.newInputStream(manifestFile.toPath())) {
+        uploadManifest.load(in);
+      } catch (IOException ex) {
+        throw new MojoFailureException("unable to read upload manifest: " + manifestFile, ex);
+      }
+    }
+  }
+
+  private void writeManifest() throws MojoFailureException {
+    File manifestFile = new File(markersDirectory, MANIFEST_FILENAME);
+    if (uploadManifest.isEmpty()) {
+      return;
+    }
+    if (!markersDirectory.exists()) {
+      markersDirectory.mkdirs();
+    }
+    try (OutputStream out = Files.newOutputStream(manifestFile.toPath())) {
+      uploadManifest.store(out, "devsak upload manifest");
+    } catch (IOException ex) {
+      throw new MojoFailureException("unable to write upload manifest: " + manifestFile, ex);
+    }
+  }
+
+  protected CloseableHttpClient getHttpClient(ArtifactRepository repository)
+          throws MojoExecutionException {
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(Math.max(1, threads));
+    connectionManager.setDefaultMaxPerRoute(Math.max(1, threads));
+    connectionManager.setValidateAfterInactivity(2000);
+
+    HttpClientBuilder clientBuilder = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setKeepAliveStrategy((response, context) -> {
+              long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+              return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+            })
+            .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+            .setRequestExecutor(new HttpRequestExecutor(expectContinueTimeout));
+    CredentialsProvider credsProvider = null;
+
+    Authentication authentication = repository.getAuthentication();
+    if (authentication != null) {
+      getLog().debug("Found credentials: username="
+              + authentication.getUsername()
+              + " password="
+              + authentication.getPassword());
+      credsProvider = new BasicCredentialsProvider();
+      credsProvider.setCredentials(
+              new AuthScope(AuthScope.ANY),
+              new UsernamePasswordCredentials(authentication.getUsername(), authentication.getPassword()));
+      clientBuilder.setDefaultCredentialsProvider(credsProvider);
+    }
+
+    Proxy proxy = repository.getProxy();
+    if (proxy != null) {
+      // NonProxyHosts is handled by ArtifactRepository, the Proxy will not be present here for NonProxyHosts
+      if (proxy.getProtocol() == null || proxy.getProtocol().equalsIgnoreCase(Proxy.PROXY_HTTP)) {
+        getLog().debug("Found Proxy configuration: " + proxy.getHost() + ":" + proxy.getPort());
+        HttpHost proxyHost = new HttpHost(proxy.getHost(), proxy.getPort());
+        clientBuilder.setProxy(proxyHost);
+
+        if (proxy.getUserName() != null) {
+          getLog().debug("Found proxy credentials: username=" + proxy.getUserName());
+          // Add CredentialsProvider if one was not added for target host Authentication
+          if (credsProvider == null) {
+            credsProvider = new BasicCredentialsProvider();
+            clientBuilder.setDefaultCredentialsProvider(credsProvider);
+          }
+          credsProvider.setCredentials(
+                  new AuthScope(proxyHost),
+                  new UsernamePasswordCredentials(proxy.getUserName(), proxy.getPassword()));
+          clientBuilder.setProxyAuthenticationStrategy(new ProxyAuthenticationStrategy());
+        }
+      } else {
+        throw new MojoExecutionException("Proxy protocol " + proxy.getProtocol() + " is not supported yet");
+      }
+    }
+    return clientBuilder.build();
+  }
+
+  /**
+   * Creates the authentication cache shared by all uploads. With
+   * <i>preemptiveAuth</i>, it is primed with basic authentication for the
+   * target host. Otherwise, it picks up the scheme of the first successful
+   * challenge.
+   *
+   * @param targetUrl the URL to upload to
+   * @return the shared authentication cache
+   * @throws MojoExecutionException if the target URL is invalid
+   */
+  protected AuthCache getAuthCache(String targetUrl)
+          throws MojoExecutionException {
+    AuthCache cache = new BasicAuthCache();
+    if (preemptiveAuth) {
+      try {
+        HttpHost target = URIUtils.extractHost(URI.create(targetUrl));
+        if (target == null) {
+          throw new MojoExecutionException("Invalid URL: " + targetUrl);
+        }
+        cache.put(target, new BasicScheme());
+      } catch (IllegalArgumentException e) {
+        throw new MojoExecutionException("Invalid URL: " + targetUrl, e);
+      }
+    }
+    return cache;
+  }
+
+  protected ArtifactRepository getArtifactRepository() {
+    Objects.requireNonNull(serverUrl, "serverUrl must not be null");
+
+    ArtifactRepositoryPolicy policy = new ArtifactRepositoryPolicy();
+    ArtifactRepository repository
+            = repositorySystem.createArtifactRepository(serverId, serverUrl, repositoryLayout, policy, policy);
+
+    List<ArtifactRepository> repositories = new ArrayList<>();
+    repositories.add(repository);
+
+    // repositorySystem.injectMirror( artifactRepositories, session.getRequest().getMirrors() );
+    repositorySystem.injectProxy(repositories, session.getRequest().getProxies());
+
+    repositorySystem.injectAuthentication(repositories, session.getRequest().getServers());
+
+    repository = repositories.get(0);
+    return repository;
+  }
+
+  /**
+   * Uploads a single file.
+   *
+   * @param client the shared HTTP client
+   * @param file the file to upload
+   * @param targetUrl the URL to upload to
+   * @return the ETag of the uploaded resource as reported by the server, or
+   * null
+   * @throws MojoExecutionException if the upload failed
+   */
+  protected String uploadFile(CloseableHttpClient client, File file, String targetUrl)
+          throws MojoExecutionException {
+    getLog().info("Uploading " + file.getAbsolutePath() + " to " + targetUrl);
+
+    TransferProgress.Transfer transfer = progress.start(getRelativePath(file), file.length());
+    try {
+      String etag = sendFile(client, file, targetUrl, transfer);
+      transfer.done();
+      return etag;
+    } catch (MojoExecutionException e) {
+      transfer.failed();
+      throw e;
+    }
+  }
+
+  private String sendFile(CloseableHttpClient client, File file, String targetUrl,
+          TransferProgress.Transfer transfer)
+          throws MojoExecutionException {
+
+    List<String> algorithms = new ArrayList<>();
+    if (checksums != null) {
+      for (String checksum : checksums) {
+        algorithms.add(CHECKSUM_ALGORITHMS.get(checksum.trim().toLowerCase()));
+      }
+    }
+
+    // With checksum deploy, the digests are needed before the body is sent
+    Map<String, String> digests = null;
+    Map<String, String> checksumHeaders = new LinkedHashMap<>();
+    String etag = null;
+    boolean deployed = false;
+    if (checksumDeploy && !usePOST) {
+      for (String algorithm : CHECKSUM_DEPLOY_HEADERS.keySet()) {
+        if (!algorithms.contains(algorithm)) {
+          algorithms.add(algorithm);
+        }
+      }
+      try {
+        DigestingEntity digestingEntity = new DigestingEntity(new FileEntity(file), algorithms);
+        digestingEntity.writeTo(NullOutputStream.INSTANCE);
+        digests = digestingEntity.getDigests();
+      } catch (IOException | NoSuchAlgorithmException e) {
+        throw new MojoExecutionException("Could not compute checksums of " + file.getName() + ": " + e.getMessage(), e);
+      }
+      for (Map.Entry<String, String> header : CHECKSUM_DEPLOY_HEADERS.entrySet()) {
+        checksumHeaders.put(header.getValue(), digests.get(header.getKey()));
+      }
+      deployed = deployChecksum(client, targetUrl, file.getName(), checksumHeaders);
+    }
+
+    if (!deployed) {
+      ContentType contentType = getContentType(file, null);
+      HttpEntity entity = new FileEntity(file, contentType);
+
+      DigestingEntity digestingEntity = null;
+      if (digests == null && !algorithms.isEmpty()) {
+        try {
+          digestingEntity = new DigestingEntity(entity, algorithms);
+        } catch (NoSuchAlgorithmException e) {
+          throw new MojoExecutionException("Checksum not supported: " + e.getMessage(), e);
+        }
+        entity = digestingEntity;
+      }
+
+      entity = track(entity, transfer);
+
+      // Compress outside of the digests, so the checksums match the file
+      if (gzip && isCompressible(file, contentType)) {
+        entity = new GzipCompressingEntity(entity);
+      }
+
+      etag = upload(client, entity, targetUrl, file.getName(), checksumHeaders);
+
+      if (digestingEntity != null) {
+        digests = digestingEntity.getDigests();
+      }
+    }
+
+    if (checksums != null) {
+      for (String checksum : checksums) {
+        String extension = checksum.trim().toLowerCase();
+        String digest = digests.get(CHECKSUM_ALGORITHMS.get(extension));
+        upload(client, new StringEntity(digest, ContentType.TEXT_PLAIN),
+                targetUrl + "." + extension, file.getName() + "." + extension, Collections.emptyMap());
+      }
+    }
+    return etag;
+  }
+
+  /**
+   * Attempts to deploy a file by its checksums only, without sending the
+   * content. This succeeds, if the server already holds content with the
+   * given checksums.
+   *
+   * @param client the shared HTTP client
+   * @param targetUrl the URL to upload to
+   * @param name the name of the file, used for messages
+   * @param checksumHeaders the checksum headers to send
+   * @return true, if the file was deployed; false, if the server does not know
+   * the content and it must be uploaded
+   * @throws MojoExecutionException if the server rejected the request
+   */
+  protected boolean deployChecksum(CloseableHttpClient client, String targetUrl, String name,
+          Map<String, String> checksumHeaders)
+          throws MojoExecutionException {
+    HttpPut request = new HttpPut(targetUrl);
+    if (null != headers) {
+      for (Map.Entry<String, String> entry : headers.entrySet()) {
+        request.addHeader(entry.getKey(), entry.getValue());
+      }
+    }
+    request.addHeader(CHECKSUM_DEPLOY_HEADER, "true");
+    for (Map.Entry<String, String> entry : checksumHeaders.entrySet()) {
+      request.addHeader(entry.getKey(), entry.getValue());
+    }
+
+    try (CloseableHttpResponse response = execute(client, request)) {
+      int status = response.getStatusLine().getStatusCode();
+      release(response);
+      if (status >= 200 && status <= 299) {
+        getLog().info("Deployed " + name + " by checksum");
+        return true;
+      }
+      if (status == HttpStatus.SC_NOT_FOUND) {
+        getLog().debug("Content of " + name + " not known by server, uploading it");
+        return false;
+      }
+      throw new MojoExecutionException("Could not deploy file " + name + " by checksum: "
+              + response.getStatusLine().toString());
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not deploy file " + name + " by checksum: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Sends an entity to the given URL.
+   *
+   * @param client the shared HTTP client
+   * @param entity the content to send
+   * @param targetUrl the URL to upload to
+   * @param name the name of the content, used for messages
+   * @param extraHeaders headers to send in addition to the configured ones
+   * @return the ETag of the uploaded resource as reported by the server, or
+   * null
+   * @throws MojoExecutionException if the upload failed
+   */
+  protected String upload(CloseableHttpClient client, HttpEntity entity, String targetUrl, String name,
+          Map<String, String> extraHeaders)
+          throws MojoExecutionException {
+    HttpEntityEnclosingRequestBase request;
+    if (usePOST) {
+      request = new HttpPost(targetUrl);
+    } else {
+      request = new HttpPut(targetUrl);
+    }
+    return upload(client, request, entity, name, extraHeaders);
+  }
+
+  /**
+   * Sends an entity with the given request.
+   *
+   * @param client the shared HTTP client
+   * @param request the request to send the entity with
+   * @param entity the content to send
+   * @param name the name of the content, used for messages
+   * @param extraHeaders headers to send in addition to the configured ones
+   * @return the ETag of the uploaded resource as reported by the server, or
+   * null
+   * @throws MojoExecutionException if the upload failed
+   */
+  protected String upload(CloseableHttpClient client, HttpEntityEnclosingRequestBase request, HttpEntity entity,
+          String name, Map<String, String> extraHeaders)
+          throws MojoExecutionException {
+    CloseableHttpResponse response = null;
+    try {
+      request.setEntity(entity);
+
+      if (expectContinueThreshold >= 0 && entity.getContentLength() > expectContinueThreshold) {
+        // Let the server reject the request, before the content is sent. With
+        // non-preemptive authentication, this also applies to the challenge.
+        request.setConfig(RequestConfig.custom().setExpectContinueEnabled(true).build());
+      }
+
+      if (null != headers) {
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+          request.addHeader(entry.getKey(), entry.getValue());
+        }
+      }
+      for (Map.Entry<String, String> entry : extraHeaders.entrySet()) {
+        request.addHeader(entry.getKey(), entry.getValue());
+      }
+
+      response = execute(client, request);
+
+      int status = response.getStatusLine().getStatusCode();
+      if (status < 200 || status > 299) {
+        String message = "Could not upload file " + name + ": " + response.getStatusLine().toString();
+        String responseBody = readBody(response, errorBodyLimit);
+        if (responseBody != null && !responseBody.isEmpty()) {
+          getLog().info(responseBody);
+        }
+        throw new MojoExecutionException(message);
+      }
+      Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+      release(response);
+      return etag != null ? etag.getValue() : null;
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not upload file " + name + ": " + e.getMessage(), e);
+    } finally {
+      request.releaseConnection();
+    }
+  }
+
+  /**
+   * Executes a request with the shared auth cache, which either holds the
+   * pre-emptive scheme or the one learned from a previous challenge.
+   *
+   * @param client the shared HTTP client
+   * @param request the request to execute
+   * @return the response
+   * @throws IOException in case of a problem or the connection was aborted
+   */
+  protected CloseableHttpResponse execute(CloseableHttpClient client, HttpUriRequest request)
+          throws IOException {
+    boolean idempotent = !HttpPost.METHOD_NAME.equals(request.getMethod());
+
+    for (int attempt = 1;; attempt++) {
+      boolean retry = idempotent && attempt <= retries;
+      CloseableHttpResponse response;
+      try {
+        HttpClientContext localContext = HttpClientContext.create();
+        localContext.setAuthCache(authCache);
+        response = client.execute(request, localContext);
+      } catch (IOException e) {
+        if (!retry || e instanceof UnknownHostException || e instanceof SSLException) {
+          throw e;
+        }
+        waitForRetry(request, attempt, -1, e.toString());
+        continue;
+      }
+
+      int status = response.getStatusLine().getStatusCode();
+      if (retry && (status == 429
+              || (status >= 500 && status != HttpStatus.SC_NOT_IMPLEMENTED
+              && status != HttpStatus.SC_HTTP_VERSION_NOT_SUPPORTED))) {
+        long retryAfter = getRetryAfter(response);
+        // Discard the error response before waiting
+        release(response);
+        waitForRetry(request, attempt, retryAfter, response.getStatusLine().toString());
+        continue;
+      }
+      return response;
+    }
+  }
+
+  /**
+   * Reads the beginning of a response body as text and releases the
+   * response. At most <i>limit</i> bytes are read, the rest is discarded
+   * without buffering it.
+   *
+   * @param response the response to read
+   * @param limit maximum number of bytes to read
+   * @return the text read, or null if the response has no body
+   * @throws IOException if the body could not be read
+   */
+  protected String readBody(CloseableHttpResponse response, int limit) throws IOException {
+    HttpEntity entity = response.getEntity();
+    if (entity == null) {
+      return null;
+    }
+    try {
+      byte[] buffer = new byte[Math.max(0, limit)];
+      int length = IOUtils.read(entity.getContent(), buffer);
+
+      Charset charset = null;
+      try {
+        ContentType contentType = ContentType.get(entity);
+        charset = contentType != null ? contentType.getCharset() : null;
+      } catch (ParseException | UnsupportedCharsetException e) {
+        getLog().debug("Invalid content type of response: " + e.getMessage());
+      }
+      return new String(buffer, 0, length, charset != null ? charset : StandardCharsets.ISO_8859_1);
+    } finally {
+      release(response);
+    }
+  }
+
+  /**
+   * Releases a response, which is not read any further. A small remainder of
+   * the body is drained, so the connection can be reused. A larger one is
+   * discarded by closing the connection, instead of reading it.
+   *
+   * @param response the response to release
+   */
+  protected void release(CloseableHttpResponse response) {
+    try {
+      HttpEntity entity = response.getEntity();
+      if (entity != null && entity.isStreaming()) {
+        InputStream in = entity.getContent();
+        long remaining = entity.getContentLength();
+        if (remaining < 0 || remaining <= DRAIN_LIMIT) {
+          byte[] buffer = new byte[8192];
+          long drained = 0;
+          int n;
+          while (drained <= DRAIN_LIMIT && (n = in.read(buffer)) != -1) {
+            drained += n;
+          }
+          if (drained <= DRAIN_LIMIT) {
+            // at the end of the body, closing returns the connection to the pool
+            in.close();
+          }
+        }
+      }
+    } catch (IOException e) {
+      getLog().debug("Failed to drain response: " + e.getMessage());
+    } finally {
+      try {
+        // closes the connection, if the body was not read to the end
+        response.close();
+      } catch (IOException e) {
+        getLog().debug("Failed to close response: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Waits before the next attempt of a request. Without a delay requested by
+   * the server, the delay grows exponentially with the attempts and is
+   * randomized to spread retries of concurrent uploads.
+   *
+   * @param request the request to retry
+   * @param attempt the number of the failed attempt
+   * @param retryAfter the delay requested by the server in milliseconds, or
+   * -1
+   * @param reason the reason for the retry, used for messages
+   * @throws InterruptedIOException if the thread was interrupted
+   */
+  private void waitForRetry(HttpUriRequest request, int attempt, long retryAfter, String reason)
+          throws InterruptedIOException {
+    long delay;
+    if (retryAfter >= 0) {
+      delay = Math.min(retryAfter, maxRetryDelay);
+    } else {
+      long backoff = Math.min(maxRetryDelay, retryDelay << Math.min(attempt - 1, 30));
+      delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+    getLog().warn(request.getMethod() + " " + request.getURI() + " failed (" + reason + "), retrying in "
+            + delay + " ms (" + attempt + "/" + retries + ")");
+    try {
+      Thread.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for retry");
+    }
+  }
+
+  /**
+   * @param response the response
+   * @return the delay in milliseconds requested by the
+   * <code>Retry-After</code> header, or -1 if not present
+   */
+  private long getRetryAfter(CloseableHttpResponse response) {
+    Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+    if (header == null) {
+      return -1;
+    }
+    String value = header.getValue().trim();
+    try {
+      return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+    } catch (NumberFormatException e) {
+      Date date = DateUtils.parseDate(value);
+      return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : -1;
+    }
+  }
+
+  protected String getTargetUrl(ArtifactRepository repository) {
+    StringBuilder sb = new StringBuilder(repository.getUrl());
+
+    if (!repository.getUrl().endsWith("/") && !serverPath.startsWith("/")) {
+      sb.append("/");
+    }
+
+    sb.append(serverPath);
+
+    return sb.toString();
+  }
+
+  /**
+   * Resolves the target URL of a file by appending its
+   * {@link #getRelativePath relative path}.
+   *
+   * @param baseUrl the URL of the target directory
+   * @param file the file to upload
+   * @return the target URL of the file
+   * @throws MojoExecutionException if the path cannot be encoded as URL
+   */
+  protected String getTargetUrl(String baseUrl, File file) throws MojoExecutionException {
+    String relativePath = getRelativePath(file);
+    try {
+      // encode the path segments, but keep the separators
+      String encodedPath = new URI(null, null, relativePath, null).getRawPath();
+      return baseUrl.endsWith("/") ? baseUrl + encodedPath : baseUrl + "/" + encodedPath;
+    } catch (URISyntaxException e) {
+      throw new MojoExecutionException("Invalid path: " + relativePath, e);
+    }
+  }
+
+  /**
+   * @param file the file to upload
+   * @return the path of the file relative to the target directory, with '/'
+   * as separator
+   */
+  protected abstract String getRelativePath(File file);
+
+  /**
+   * Reorders the files, so consecutive uploads alternate between directories.
+   * This spreads the directories of a tree across the concurrent workers,
+   * instead of having all workers write to the same directory at a time.
+   *
+   * @param files the files to upload
+   * @return the files in interleaved order
+   */
+  protected List<File> interleaveDirectories(List<File> files) {
+    Map<File, List<File>> directories = new LinkedHashMap<>();
+    for (File f : files) {
+      directories.computeIfAbsent(f.getParentFile(), k -> new ArrayList<>()).add(f);
+    }
+
+    List<Iterator<File>> iterators = new ArrayList<>();
+    for (List<File> directoryFiles : directories.values()) {
+      iterators.add(directoryFiles.iterator());
+    }
+
+    List<File> result = new ArrayList<>(files.size());
+    while (!iterators.isEmpty()) {
+      for (Iterator<Iterator<File>> it = iterators.iterator(); it.hasNext();) {
+        Iterator<File> directoryIterator = it.next();
+        result.add(directoryIterator.next());
+        if (!directoryIterator.hasNext()) {
+          it.remove();
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the files to upload. A {@link List} is uploaded in its order,
+   * other iterables as they produce the files.
+   * @throws MojoExecutionException if the files could not be determined
+   * @throws MojoFailureException if the files could not be determined
+   */
+  protected abstract Iterable<File> getFilesToUpload() throws MojoExecutionException, MojoFailureException;
+
+  /**
+   * @return true, if the relative path of each file is appended to the
+   * target URL
+   */
+  protected abstract boolean isPreservePaths();
+}
@@ -0,0 +1,98 @@
+/*
+ * ArtifactItemResolver
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.ProjectBuildingRequest;
+import org.apache.maven.shared.artifact.filter.resolve.AndFilter;
+import org.apache.maven.shared.artifact.filter.resolve.PatternExclusionsFilter;
+import org.apache.maven.shared.artifact.filter.resolve.PatternInclusionsFilter;
+import org.apache.maven.shared.artifact.filter.resolve.TransformableFilter;
+import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResult;
+import org.apache.maven.shared.transfer.dependencies.DefaultDependableCoordinate;
+import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolver;
+import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolverException;
+
+/**
+ * Resolves {@link ArtifactItem}s including their dependencies, for the goals
+ * configured with <i>artifactItems</i>. The upload goals cannot extend
+ * {@link AbstractDependenciesMojo}, so the resolution is shared through this
+ * class.
+ *
+ * @author delker
+ */
+class ArtifactItemResolver {
+
+  private final DependencyResolver dependencyResolver;
+
+  private final ProjectBuildingRequest buildingRequest;
+
+  /**
+   * @param dependencyResolver the resolver to use
+   * @param buildingRequest the request to resolve the artifacts with
+   */
+  ArtifactItemResolver(DependencyResolver dependencyResolver, ProjectBuildingRequest buildingRequest) {
+    this.dependencyResolver = dependencyResolver;
+    this.buildingRequest = buildingRequest;
+  }
+
+  /**
+   * Resolves the artifact and all its dependencies from the repository. The
+   * files of the resolved artifacts are located in the local repository.
+   *
+   * @param artifactItem containing the information about the Artifact
+   * @return the resolved artifacts, which pass the filters of the item
+   * @throws DependencyResolverException if the artifacts could not be resolved
+   */
+  List<Artifact> resolve(ArtifactItem artifactItem) throws DependencyResolverException {
+    DefaultDependableCoordinate coordinate = new DefaultDependableCoordinate();
+    coordinate.setGroupId(artifactItem.getGroupId());
+    coordinate.setArtifactId(artifactItem.getArtifactId());
+    coordinate.setVersion(artifactItem.getVersion());
+    coordinate.setType(artifactItem.getType());
+
+    List<Artifact> artifacts = new ArrayList<>();
+    Iterable<ArtifactResult> arList
+            = dependencyResolver.resolveDependencies(buildingRequest, coordinate, getFilter(artifactItem));
+    if (arList != null) {
+      for (ArtifactResult ar : arList) {
+        artifacts.add(ar.getArtifact());
+      }
+    }
+    return artifacts;
+  }
+
+  private static TransformableFilter getFilter(ArtifactItem artifactItem) {
+    List<TransformableFilter> filterList = new ArrayList<>();
+
+    String excludes = artifactItem.getExcludes();
+    if (StringUtils.isNotEmpty(excludes)) {
+      filterList.add(new PatternExclusionsFilter(Arrays.asList(excludes.split(","))));
+    }
+    String includes = artifactItem.getIncludes();
+    if (StringUtils.isNotEmpty(includes)) {
+      filterList.add(new PatternInclusionsFilter(Arrays.asList(includes.split(","))));
+    }
+
+    return filterList.isEmpty() ? null : new AndFilter(filterList);
+  }
+}
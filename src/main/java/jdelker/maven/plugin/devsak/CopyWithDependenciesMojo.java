@@ -21,34 +21,15 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Objects;
 import java.util.Set;
 import jdelker.maven.plugin.devsak.util.DependencyUtil;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.artifact.Artifact;
-import org.apache.maven.artifact.ArtifactUtils;
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.DefaultProjectBuildingRequest;
-import org.apache.maven.project.ProjectBuildingRequest;
-import org.apache.maven.shared.artifact.filter.resolve.AndFilter;
-import org.apache.maven.shared.artifact.filter.resolve.PatternExclusionsFilter;
-import org.apache.maven.shared.artifact.filter.resolve.PatternInclusionsFilter;
-import org.apache.maven.shared.artifact.filter.resolve.TransformableFilter;
-import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResult;
-import org.apache.maven.shared.transfer.dependencies.DefaultDependableCoordinate;
-import org.apache.maven.shared.transfer.dependencies.DependableCoordinate;
-import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolver;
 import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolverException;
 import org.codehaus.plexus.util.FileUtils;
 
@@ -60,18 +41,10 @@ import org.codehaus.plexus.util.FileUtils;
  * @since 1.0
  */
 @Mojo(name = "copy-with-dependencies", defaultPhase = LifecyclePhase.PREPARE_PACKAGE, requiresProject = true, threadSafe = true)
-public class CopyWithDependenciesMojo extends AbstractMojo {
+public class CopyWithDependenciesMojo extends AbstractDependenciesMojo {
 
   public static final String TRACKING_FILENAME = "copy-with-dependencies.tracking";
 
-  /**
-   * Collection of ArtifactItems to work on.
-   *
-   * See <a href="./usage.html">Usage</a> for details.
-   */
-  @Parameter
-  private List<ArtifactItem> artifactItems;
-
   /**
    * Track installed artifacts, so they are not copied on any subsequent build.
    */
@@ -84,21 +57,6 @@ public class CopyWithDependenciesMojo extends AbstractMojo {
   @Parameter(defaultValue = "${project.build.directory}/copied-artifacts", required = true)
   private File outputDirectory;
 
-  /**
-   * Directory to store marker files
-   */
-  @Parameter(defaultValue = "${project.build.directory}/.markers", required = true)
-  private File markersDirectory;
-
-  /**
-   * The Maven session
-   */
-  @Parameter(defaultValue = "${session}", readonly = true, required = true)
-  protected MavenSession session;
-
-  @Component
-  private DependencyResolver dependencyResolver;
-
   private final Set<String> copiedArtifacts = new HashSet<>();
 
   /**
@@ -148,24 +106,10 @@ public class CopyWithDependenciesMojo extends AbstractMojo {
       outputDir = outputDirectory;
     }
 
-    // handle filters
-    TransformableFilter filter = getFilter(artifactItem);
-
     try {
-      DefaultDependableCoordinate coordinate = new DefaultDependableCoordinate();
-      coordinate.setGroupId(artifactItem.getGroupId());
-      coordinate.setArtifactId(artifactItem.getArtifactId());
-      coordinate.setVersion(artifactItem.getVersion());
-      coordinate.setType(artifactItem.getType());
-
-      Iterable<ArtifactResult> arList
-              = dependencyResolver.resolveDependencies(getProjectBuildingRequest(), coordinate, filter);
-      if (arList != null) {
-        for (ArtifactResult ar : arList) {
-          Artifact a = ar.getArtifact();
-          File destFile = new File(outputDir, DependencyUtil.getFormattedFileName(a, false));
-          copyFile(a.getFile(), destFile);
-        }
+      for (Artifact a : resolveArtifacts(artifactItem)) {
+        File destFile = new File(outputDir, DependencyUtil.getFormattedFileName(a, false));
+        copyFile(a.getFile(), destFile);
       }
     } catch (DependencyResolverException ex) {
       throw new MojoExecutionException("failed to copy dependencies", ex);
@@ -189,19 +133,6 @@ public class CopyWithDependenciesMojo extends AbstractMojo {
     }
   }
 
-  /**
-   * Generate a new ProjectBuildingRequest populated from the current session
-   * and the current project remote repositories, used to resolve artifacts.
-   *
-   * @return ProjectBuildingRequest
-   */
-  public ProjectBuildingRequest getProjectBuildingRequest() {
-    ProjectBuildingRequest pbr
-            = new DefaultProjectBuildingRequest(session.getProjectBuildingRequest());
-
-    return pbr;
-  }
-
   private void readTrackingFile() throws MojoFailureException {
     File trackingFile = new File(markersDirectory, TRACKING_FILENAME);
     try {
@@ -226,255 +157,4 @@ public class CopyWithDependenciesMojo extends AbstractMojo {
       throw new MojoFailureException("unable to write tracking file: " + trackingFile, ex);
     }
   }
-
-  private TransformableFilter getFilter(ArtifactItem artifactItem) {
-    List<TransformableFilter> filterList = new ArrayList<>();
-
-    String excludes = artifactItem.getExcludes();
-    if (StringUtils.isNotEmpty(excludes)) {
-      filterList.add(new PatternExclusionsFilter(Arrays.asList(excludes.split(","))));
-    }
-    String includes = artifactItem.getIncludes();
-    if (StringUtils.isNotEmpty(includes)) {
-      filterList.add(new PatternInclusionsFilter(Arrays.asList(includes.split(","))));
-    }
-
-    return filterList.isEmpty() ? null : new AndFilter(filterList);
-  }
-
-  /**
-   * POJO for an artifact item.
-   *
-   * @author jdelker
-   */
-  public static class ArtifactItem
-          implements DependableCoordinate {
-
-    /**
-     * Group Id of Artifact
-     *
-     * @parameter
-     * @required
-     */
-    private String groupId;
-
-    /**
-     * Name of Artifact
-     *
-     * @parameter
-     * @required
-     */
-    private String artifactId;
-
-    /**
-     * Version of Artifact
-     *
-     * @parameter
-     */
-    private String version = null;
-
-    /**
-     * Type of Artifact (War,Jar,etc)
-     *
-     * @parameter
-     * @required
-     */
-    private String type = "jar";
-
-    /**
-     * Classifier for Artifact (tests,sources,etc)
-     *
-     * @parameter
-     */
-    private String classifier;
-
-    /**
-     * Location to use for this Artifact. Overrides default location.
-     *
-     * @parameter
-     */
-    private File outputDirectory;
-
-    /**
-     * Provides ability to change destination file name
-     *
-     * @parameter
-     */
-    private String destFileName;
-
-    /**
-     * A comma separated list of artifacts patterns to include.
-     */
-    private String includes;
-
-    /**
-     * A comma separated list of artifacts patterns to exclude.
-     */
-    private String excludes;
-
-    /**
-     * Default constructor.
-     */
-    public ArtifactItem() {
-      // default constructor
-    }
-
-    private String filterEmptyString(String in) {
-      if ("".equals(in)) {
-        return null;
-      }
-      return in;
-    }
-
-    /**
-     * @return Returns the artifactId.
-     */
-    @Override
-    public String getArtifactId() {
-      return artifactId;
-    }
-
-    /**
-     * @param theArtifact The artifactId to set.
-     */
-    public void setArtifactId(String theArtifact) {
-      this.artifactId = filterEmptyString(theArtifact);
-    }
-
-    /**
-     * @return Returns the groupId.
-     */
-    @Override
-    public String getGroupId() {
-      return groupId;
-    }
-
-    /**
-     * @param groupId The groupId to set.
-     */
-    public void setGroupId(String groupId) {
-      this.groupId = filterEmptyString(groupId);
-    }
-
-    /**
-     * @return Returns the type.
-     */
-    @Override
-    public String getType() {
-      return type;
-    }
-
-    /**
-     * @param type The type to set.
-     */
-    public void setType(String type) {
-      this.type = filterEmptyString(type);
-    }
-
-    /**
-     * @return Returns the version.
-     */
-    @Override
-    public String getVersion() {
-      return version;
-    }
-
-    /**
-     * @param version The version to set.
-     */
-    public void setVersion(String version) {
-      this.version = filterEmptyString(version);
-    }
-
-    /**
-     * @return Returns the base version.
-     */
-    public String getBaseVersion() {
-      return ArtifactUtils.toSnapshotVersion(version);
-    }
-
-    /**
-     * @return Classifier.
-     */
-    @Override
-    public String getClassifier() {
-      return classifier;
-    }
-
-    /**
-     * @param classifier Classifier.
-     */
-    public void setClassifier(String classifier) {
-      this.classifier = filterEmptyString(classifier);
-    }
-
-    @Override
-    public String toString() {
-      if (this.classifier == null) {
-        return groupId + ":" + artifactId + ":" + Objects.toString(version, "?") + ":" + type;
-      } else {
-        return groupId + ":" + artifactId + ":" + classifier + ":" + Objects.toString(version, "?") + ":"
-                + type;
-      }
-    }
-
-    /**
-     * @return Returns the location.
-     */
-    public File getOutputDirectory() {
-      return outputDirectory;
-    }
-
-    /**
-     * @param outputDirectory The outputDirectory to set.
-     */
-    public void setOutputDirectory(File outputDirectory) {
-      this.outputDirectory = outputDirectory;
-    }
-
-    /**
-     * @return Returns the location.
-     */
-    public String getDestFileName() {
-      return destFileName;
-    }
-
-    /**
-     * @param destFileName The destFileName to set.
-     */
-    public void setDestFileName(String destFileName) {
-      this.destFileName = filterEmptyString(destFileName);
-    }
-
-    /**
-     * @return Returns a comma separated list of excluded items
-     */
-    public String getExcludes() {
-      return DependencyUtil.cleanToBeTokenizedString(this.excludes);
-    }
-
-    /**
-     * @param excludes A comma separated list of items to exclude i.e.
-     * <code>**\/*.xml, **\/*.properties</code>
-     */
-    public void setExcludes(String excludes) {
-      this.excludes = excludes;
-    }
-
-    /**
-     * @return Returns a comma separated list of included items
-     */
-    public String getIncludes() {
-      return DependencyUtil.cleanToBeTokenizedString(this.includes);
-    }
-
-    /**
-     * @param includes A comma separated list of items to include i.e.
-     * <code>**\/*.xml, **\/*.properties</code>
-     */
-    public void setIncludes(String includes) {
-      this.includes = includes;
-    }
-  }
-
 }
@@ -25,12 +25,31 @@ import jakarta.xml.bind.annotation.XmlElement;
 import jakarta.xml.bind.annotation.XmlRootElement;
 import jakarta.xml.bind.annotation.XmlType;
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import jdelker.maven.plugin.devsak.util.CompressedTarExtractor;
+import jdelker.maven.plugin.devsak.util.TransferProgress;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.BuildPluginManager;
@@ -76,11 +95,58 @@ public class DownloadMojo extends AbstractMojo {
   private String outputDirectory;
 
   /**
-   * Whether to unpack the file in case it is an archive (.zip).
+   * Whether to unpack the file in case it is an archive (.zip). xz and zstd
+   * compressed tar files are unpacked by this plugin, multi-block xz files
+   * with "unpackThreads" threads.
    */
   @Parameter(property = "download.unpack", defaultValue = "false")
   private boolean unpack;
 
+  /**
+   * Number of threads to decompress the blocks of a multi-block
+   * <code>.tar.xz</code> file.
+   */
+  @Parameter(property = "download.unpackThreads", defaultValue = "1")
+  private int unpackThreads;
+
+  /**
+   * Maximum number of bytes of the xz blocks buffered while decompressing with
+   * multiple threads. Fewer threads are used, if the blocks do not fit, down
+   * to a single thread.
+   */
+  @Parameter(property = "download.xzMemoryLimit", defaultValue = "268435456")
+  private long xzMemoryLimit;
+
+  /**
+   * Number of items downloaded concurrently. Items are started in their
+   * declared order, respectively largest first with "largestFirst".
+   */
+  @Parameter(property = "download.threads", defaultValue = "1")
+  private int threads;
+
+  /**
+   * Whether to start the largest download items first, so that with several
+   * "threads" a large item started last does not prolong the total time. The
+   * size of each item is probed upfront by a HEAD request
+   * (<code>Content-Length</code>). Items of unknown size keep their declared
+   * order and are started last.
+   */
+  @Parameter(property = "download.largestFirst", defaultValue = "false")
+  private boolean largestFirst;
+
+  /**
+   * Timeout in milliseconds for the HEAD requests used to probe item sizes.
+   */
+  @Parameter(property = "download.probeTimeout", defaultValue = "5000")
+  private int probeTimeout;
+
+  /**
+   * Interval in milliseconds, in which the completed items and the running
+   * time of the current item are logged. 0 logs the summary only.
+   */
+  @Parameter(property = "download.progressInterval", defaultValue = "10000")
+  private long progressInterval;
+
   @Parameter(defaultValue = "${project}", readonly = true)
   private MavenProject mavenProject;
 
@@ -109,32 +175,267 @@ public class DownloadMojo extends AbstractMojo {
     }
 
     for (DownloadItem resource : downloadItems) {
-      String uri = resource.getUri();
-      Objects.requireNonNull(uri, "downloadItem has no uri: " + resource.toString());
-      
-      String sha256 = resource.getSha256();
-      getLog().info("Downloading " + uri + (sha256 != null ? " (sha256: " + sha256 + ")" : ""));
-
-      String destDir = resource.getTargetDir() != null ?
-              resource.getTargetDir() : outputDirectory;
-      
-      executeMojo(
-              plugin(DOWNLOAD_PLUGIN[0], DOWNLOAD_PLUGIN[1], DOWNLOAD_PLUGIN[2]),
-              goal("wget"),
-              configuration(
-                      element(name("uri"), uri),
-                      element(name("outputFileName"), resource.getTargetName()),
-                      element(name("outputDirectory"), destDir),
-                      element(name("unpack"), String.valueOf(unpack)),
-                      element(name("sha256"), sha256)
-              ),
-              executionEnvironment(
-                      mavenProject,
-                      mavenSession,
-                      pluginManager
-              )
-      );
+      Objects.requireNonNull(resource.getUri(), "downloadItem has no uri: " + resource.toString());
+    }
+
+    List<DownloadItem> schedule = downloadItems;
+    Map<DownloadItem, Long> sizes = new IdentityHashMap<>();
+    if (largestFirst) {
+      schedule = scheduleLargestFirst(downloadItems, sizes);
+    }
+
+    Map<DownloadItem, Long> durations = Collections.synchronizedMap(new IdentityHashMap<>());
+    long totalStart = System.nanoTime();
+    // downloads are run by the download plugin, so the bytes of an item are
+    // only known when it is complete
+    try (TransferProgress progress = new TransferProgress(getLog(), "Downloaded", progressInterval)) {
+      progress.setLiveBytes(false);
+      download(schedule, sizes, durations, progress);
+      progress.summary();
+    }
+
+    if (largestFirst) {
+      reportSchedule(schedule, sizes, durations, System.nanoTime() - totalStart);
+    }
+  }
+
+  private void download(List<DownloadItem> schedule, Map<DownloadItem, Long> sizes,
+          Map<DownloadItem, Long> durations, TransferProgress progress)
+          throws MojoExecutionException {
+    if (threads <= 1 || schedule.size() <= 1) {
+      for (DownloadItem resource : schedule) {
+        download(resource, sizes.getOrDefault(resource, -1L), durations, progress);
+      }
+      return;
+    }
+
+    // the queue of the pool is FIFO, so the items are started in scheduled order
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, schedule.size()));
+    List<Future<?>> futures = new ArrayList<>();
+    for (DownloadItem resource : schedule) {
+      futures.add(executor.submit(() -> {
+        download(resource, sizes.getOrDefault(resource, -1L), durations, progress);
+        return null;
+      }));
+    }
+
+    MojoExecutionException failure = null;
+    try {
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          MojoExecutionException cause = ex.getCause() instanceof MojoExecutionException
+                  ? (MojoExecutionException) ex.getCause()
+                  : new MojoExecutionException("Download failed", ex.getCause());
+          if (failure == null) {
+            failure = cause;
+          } else {
+            failure.addSuppressed(cause);
+          }
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Download interrupted", ex);
+    } finally {
+      executor.shutdownNow();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void download(DownloadItem resource, long size, Map<DownloadItem, Long> durations,
+          TransferProgress progress) throws MojoExecutionException {
+    String uri = resource.getUri();
+    long start = System.nanoTime();
+    TransferProgress.Transfer transfer = progress.start(uri, size);
+
+    String sha256 = resource.getSha256();
+    getLog().info("Downloading " + uri + (sha256 != null ? " (sha256: " + sha256 + ")" : ""));
+
+    String destDir = resource.getTargetDir() != null ?
+            resource.getTargetDir() : outputDirectory;
+    String fileName = getFileName(resource);
+    // xz and zstd compressed tar files are unpacked here, multi-threaded
+    boolean unpackHere = unpack && fileName != null && CompressedTarExtractor.isSupported(fileName);
+    
+    executeMojo(
+            plugin(DOWNLOAD_PLUGIN[0], DOWNLOAD_PLUGIN[1], DOWNLOAD_PLUGIN[2]),
+            goal("wget"),
+            configuration(
+                    element(name("uri"), uri),
+                    element(name("outputFileName"), resource.getTargetName()),
+                    element(name("outputDirectory"), destDir),
+                    element(name("unpack"), String.valueOf(unpack && !unpackHere)),
+                    element(name("sha256"), sha256)
+            ),
+            executionEnvironment(
+                    mavenProject,
+                    mavenSession,
+                    pluginManager
+            )
+    );
+
+    // archives unpacked by the download plugin are gone, so only a probed size is known
+    long downloadedSize = unpack && !unpackHere
+            ? size
+            : getDownloadedSize(fileName, destDir, size);
+    if (unpackHere) {
+      unpackArchive(new File(destDir, fileName), new File(destDir));
+    }
+
+    durations.put(resource, System.nanoTime() - start);
+    if (downloadedSize < 0) {
+      transfer.sizeUnknown();
+    } else {
+      transfer.update(downloadedSize);
+    }
+    transfer.done();
+  }
+
+  /**
+   * Orders the download items by their size, largest first. Sizes are probed
+   * by HEAD requests; items, whose size could not be determined, are appended
+   * in their declared order.
+   *
+   * @param items the declared download items
+   * @param sizes receives the probed size of each item (-1 if unknown)
+   * @return the download items in scheduled order
+   */
+  private List<DownloadItem> scheduleLargestFirst(List<DownloadItem> items, Map<DownloadItem, Long> sizes) {
+    probeSizes(items, sizes);
+
+    List<DownloadItem> schedule = new ArrayList<>(items);
+    // List.sort is stable, so equally sized and unknown items keep their order
+    schedule.sort(Comparator.comparingLong((DownloadItem item) -> sizes.get(item)).reversed());
+
+    getLog().info("Download order (largest first):");
+    for (DownloadItem item : schedule) {
+      long size = sizes.get(item);
+      getLog().info("  " + item.getUri() + " (" + (size < 0 ? "unknown size" : size + " bytes") + ")");
+    }
+    return schedule;
+  }
+
+  /**
+   * Probes the sizes of the given download items by HEAD requests.
+   *
+   * @param items the download items to probe
+   * @param sizes receives the probed size of each item (-1 if unknown)
+   */
+  private void probeSizes(List<DownloadItem> items, Map<DownloadItem, Long> sizes) {
+    if (items.isEmpty()) {
+      return;
+    }
+    RequestConfig config = RequestConfig.custom()
+            .setConnectTimeout(probeTimeout)
+            .setConnectionRequestTimeout(probeTimeout)
+            .setSocketTimeout(probeTimeout)
+            .build();
+
+    try (CloseableHttpClient client = HttpClients.custom()
+            .useSystemProperties()
+            .setDefaultRequestConfig(config)
+            .build()) {
+      for (DownloadItem item : items) {
+        sizes.put(item, probeSize(client, item.getUri()));
+      }
+    } catch (IOException ex) {
+      getLog().debug("Failed to close probe client", ex);
+    }
+  }
+
+  /**
+   * Determines the size of a remote resource via a HEAD request.
+   *
+   * @param client the client to use
+   * @param uri the resource to probe
+   * @return the content length or -1, if unknown
+   */
+  private long probeSize(CloseableHttpClient client, String uri) {
+    try (CloseableHttpResponse response = client.execute(new HttpHead(uri))) {
+      int status = response.getStatusLine().getStatusCode();
+      Header header = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+      if (status >= 200 && status <= 299 && header != null) {
+        return Long.parseLong(header.getValue().trim());
+      }
+      getLog().debug("No size for " + uri + ": " + response.getStatusLine());
+    } catch (IOException | IllegalArgumentException ex) {
+      getLog().debug("Failed to probe size of " + uri, ex);
+    }
+    return -1;
+  }
+
+  /**
+   * Unpacks a downloaded archive and deletes it afterwards, as the download
+   * plugin does.
+   *
+   * @param archive the downloaded archive
+   * @param destDir the directory to unpack to
+   * @throws MojoExecutionException if the archive could not be unpacked
+   */
+  private void unpackArchive(File archive, File destDir) throws MojoExecutionException {
+    getLog().info("Unpacking " + archive.getName() + " to " + destDir);
+    try {
+      CompressedTarExtractor extractor = new CompressedTarExtractor(archive, destDir, null, unpackThreads);
+      extractor.setMemoryLimit(xzMemoryLimit);
+      extractor.extract();
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Unpack failed: " + archive, ex);
+    }
+    if (!archive.delete()) {
+      getLog().warn("Failed to delete " + archive);
+    }
+  }
+
+  /**
+   * @param item the download item
+   * @return the local file name of the item, or null if it cannot be
+   * determined
+   */
+  private String getFileName(DownloadItem item) {
+    String fileName = item.getTargetName();
+    if (fileName == null) {
+      try {
+        fileName = FilenameUtils.getName(new URI(item.getUri()).getPath());
+      } catch (URISyntaxException ex) {
+        return null;
+      }
+    }
+    return fileName == null || fileName.isEmpty() ? null : fileName;
+  }
+
+  /**
+   * Determines the size of a downloaded item from its target file.
+   *
+   * @param fileName the local file name of the item, or null
+   * @param destDir the directory it was downloaded to
+   * @param probedSize the size probed upfront, used if the file is not
+   * available (ie. when it was unpacked)
+   * @return the size in bytes, or -1 if unknown
+   */
+  private long getDownloadedSize(String fileName, String destDir, long probedSize) {
+    if (fileName != null) {
+      File downloaded = new File(destDir, fileName);
+      if (downloaded.isFile()) {
+        return downloaded.length();
+      }
+    }
+    return probedSize;
+  }
+
+  private void reportSchedule(List<DownloadItem> schedule, Map<DownloadItem, Long> sizes,
+          Map<DownloadItem, Long> durations, long total) {
+    getLog().info("Download durations:");
+    for (DownloadItem item : schedule) {
+      long size = sizes.getOrDefault(item, -1L);
+      getLog().info("  " + item.getUri()
+              + " (" + (size < 0 ? "unknown size" : size + " bytes") + "): "
+              + TimeUnit.NANOSECONDS.toMillis(durations.get(item)) + " ms");
     }
+    getLog().info("Total download time: " + TimeUnit.NANOSECONDS.toMillis(total) + " ms");
   }
 
   private void addResourcesFromFile(final File resourcesFile, final List<DownloadItem> resourcesList)
@@ -0,0 +1,143 @@
+/*
+ * PackMojo
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import jdelker.maven.plugin.devsak.util.StoringZipArchiver;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.util.DefaultFileSet;
+
+/**
+ * Goal for packing files into a zip archive.
+ *
+ * @author delker
+ * @since 2.3
+ */
+@Mojo(name = "pack", requiresProject = false, defaultPhase = LifecyclePhase.PACKAGE)
+public class PackMojo extends AbstractMojo {
+
+  /**
+   * The earliest time, which can be represented in a zip entry.
+   */
+  private static final Instant DEFAULT_TIMESTAMP = Instant.parse("1980-01-01T00:00:02Z");
+
+  /**
+   * The files to pack. Their paths within the archive are relative to the
+   * fileSet directory.
+   */
+  @Parameter(required = true)
+  private FileSet fileSet;
+
+  /**
+   * The archive to create.
+   */
+  @Parameter(property = "pack.outputFile", defaultValue = "${project.build.directory}/${project.build.finalName}.zip",
+          required = true)
+  private File outputFile;
+
+  /**
+   * File name patterns (ie. <code>*.jar</code>) of the files to store without
+   * compression, as they are compressed already.
+   */
+  @Parameter(property = "pack.storedTypes",
+          defaultValue = "*.zip,*.jar,*.war,*.ear,*.gz,*.tgz,*.bz2,*.xz,*.zst,*.7z,*.png,*.jpg,*.jpeg,*.gif,*.mp3,*.mp4")
+  private String[] storedTypes;
+
+  /**
+   * If true, the archive is reproducible: all entries get the time of
+   * <i>outputTimestamp</i>, uniform owner and permissions, and are sorted by
+   * their path.
+   */
+  @Parameter(property = "pack.reproducible", defaultValue = "true")
+  private boolean reproducible;
+
+  /**
+   * The time of all entries of a reproducible archive, either in ISO-8601
+   * format (ie. <code>2023-01-01T00:00:00Z</code>) or as seconds since the
+   * epoch. Defaults to 1980-01-01T00:00:02Z.
+   */
+  @Parameter(defaultValue = "${project.build.outputTimestamp}")
+  private String outputTimestamp;
+
+  /* ************************************************************************** */
+  @Override
+  public void execute()
+          throws MojoExecutionException, MojoFailureException {
+
+    File directory = new File(fileSet.getDirectory());
+    if (!directory.isDirectory()) {
+      throw new MojoExecutionException("fileSet directory does not exist: " + directory);
+    }
+
+    StoringZipArchiver archiver = new StoringZipArchiver();
+    archiver.setStoredTypes(storedTypes);
+    archiver.setDestFile(outputFile);
+    if (reproducible) {
+      archiver.configureReproducibleBuild(FileTime.from(getOutputTimestamp()));
+    }
+
+    DefaultFileSet files = DefaultFileSet.fileSet(directory)
+            .includeExclude(fileSet.getIncludesArray(), fileSet.getExcludesArray());
+    files.setUsingDefaultExcludes(fileSet.isUseDefaultExcludes());
+    files.setIncludingEmptyDirectories(false);
+
+    getLog().info("Packing " + directory + " to " + outputFile);
+    try {
+      File parent = outputFile.getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      archiver.addFileSet(files);
+      archiver.createArchive();
+    } catch (ArchiverException | IOException ex) {
+      throw new MojoFailureException("Pack failed", ex);
+    }
+  }
+
+  /**
+   * @return the time of all entries of a reproducible archive
+   * @throws MojoExecutionException if <i>outputTimestamp</i> is invalid
+   */
+  private Instant getOutputTimestamp() throws MojoExecutionException {
+    // like the maven-archiver, values of a single character disable the timestamp
+    if (outputTimestamp == null || outputTimestamp.trim().length() < 2) {
+      return DEFAULT_TIMESTAMP;
+    }
+    String value = outputTimestamp.trim();
+    try {
+      if (value.chars().allMatch(Character::isDigit)) {
+        return Instant.ofEpochSecond(Long.parseLong(value));
+      }
+      return OffsetDateTime.parse(value).toInstant();
+    } catch (DateTimeParseException | NumberFormatException ex) {
+      throw new MojoExecutionException("Invalid outputTimestamp: " + outputTimestamp, ex);
+    }
+  }
+}
@@ -13,9 +13,29 @@
 package jdelker.maven.plugin.devsak;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import org.apache.commons.lang3.ArrayUtils;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jdelker.maven.plugin.devsak.util.ArchiveUnpacker;
+import jdelker.maven.plugin.devsak.util.CompressedTarExtractor;
+import jdelker.maven.plugin.devsak.util.ContentLinker;
+import jdelker.maven.plugin.devsak.util.IndexedTarExtractor;
+import jdelker.maven.plugin.devsak.util.ParallelZipExtractor;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -25,9 +45,9 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.model.fileset.FileSet;
 import org.apache.maven.shared.model.fileset.util.FileSetManager;
-import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.archiver.manager.ArchiverManager;
-import org.codehaus.plexus.components.io.fileselectors.IncludeExcludeFileSelector;
+import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
+import org.codehaus.plexus.archiver.zip.AbstractZipUnArchiver;
 
 /**
  * Goal for unpacking files
@@ -48,19 +68,77 @@ public class UnpackMojo extends AbstractMojo {
   private File outputDirectory;
 
   /**
-   * The list of class files to process.
+   * The entries to extract. If set, zip archives and uncompressed tar files
+   * are not read as a whole: the entries are matched against the central
+   * directory respectively a cached index of the tar headers, and only the
+   * selected ones are read.
    */
   @Parameter
   private String[] includes;
   @Parameter
   private String[] excludes;
 
+  /**
+   * Number of archives to extract concurrently. Archives with overlapping
+   * target paths are extracted one after the other, in the order of their
+   * path, so the last one wins regardless of the number of threads. Only zip
+   * archives and uncompressed tar files are listed to find overlaps; others,
+   * like compressed tar files, are extracted in order with all archives.
+   */
+  @Parameter(property = "unpack.threads", defaultValue = "1")
+  private int threads;
+
+  /**
+   * Number of threads to extract the entries of a single zip archive (zip,
+   * jar, war, ...), respectively to decompress the blocks of a multi-block
+   * <code>.tar.xz</code> file. Zip archives with symbolic links or encrypted
+   * entries are always extracted sequentially.
+   */
+  @Parameter(property = "unpack.entryThreads", defaultValue = "1")
+  private int entryThreads;
+
+  /**
+   * Maximum number of bytes of the xz blocks buffered while decompressing a
+   * <code>.tar.xz</code> file with multiple "entryThreads". Fewer threads are
+   * used, if the blocks do not fit, down to a single thread.
+   */
+  @Parameter(property = "unpack.xzMemoryLimit", defaultValue = "268435456")
+  private long xzMemoryLimit;
+
+  /**
+   * If true, archives are skipped, which did not change since they were
+   * unpacked with the same configuration. Of changed zip archives, only the
+   * entries are written, whose size or CRC differ from the file on disk.
+   */
+  @Parameter(property = "unpack.incremental", defaultValue = "false")
+  private boolean incremental;
+
+  /**
+   * If true, files with identical content are extracted once and hard-linked
+   * to each other, across all zip archives of the fileSet. Linked files share
+   * their content and modification time, which is the time of the entry
+   * extracted last, so changing one of them changes all of them. Only enable
+   * this, if the extracted files are not modified afterwards.
+   */
+  @Parameter(property = "unpack.dedup", defaultValue = "false")
+  private boolean dedup;
+
+  /**
+   * Directory to store marker files
+   */
+  @Parameter(defaultValue = "${project.build.directory}/.markers", required = true)
+  private File markersDirectory;
+
   /**
    * To look up Archiver/UnArchiver implementations
    */
   @Component
   private ArchiverManager archiverManager;
 
+  private ContentLinker linker;
+
+  private ArchiveUnpacker unpacker;
+
   /* ************************************************************************** */
   @Override
   public void execute()
@@ -72,9 +150,163 @@ public class UnpackMojo extends AbstractMojo {
     }
 
     List<File> files = getFiles(fileSet);
-    for (File f : files) {
-      getLog().info("Unpacking " + f.getName() + " to " + outputDirectory);
-      unpack(f);
+    // a defined order, so overlapping archives always yield the same result
+    files.sort(Comparator.comparing(File::getPath));
+
+    linker = dedup ? new ContentLinker() : null;
+    unpacker = new ArchiveUnpacker(archiverManager, getLog());
+    unpacker.setSelection(includes, excludes);
+    unpacker.setEntryThreads(entryThreads, xzMemoryLimit);
+    unpacker.setSkipUpToDate(incremental);
+    unpacker.setLinker(linker);
+    if (threads <= 1 || files.size() <= 1) {
+      for (File f : files) {
+        unpack(f);
+      }
+      reportLinks();
+      return;
+    }
+
+    List<List<File>> groups = groupOverlapping(files);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, groups.size()));
+    List<Future<?>> futures = new ArrayList<>();
+    for (List<File> group : groups) {
+      futures.add(executor.submit(() -> {
+        for (File f : group) {
+          unpack(f);
+        }
+        return null;
+      }));
+    }
+
+    MojoFailureException failure = null;
+    try {
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          MojoFailureException cause = ex.getCause() instanceof MojoFailureException
+                  ? (MojoFailureException) ex.getCause()
+                  : new MojoFailureException("Unpack failed", ex.getCause());
+          if (failure == null) {
+            failure = cause;
+          } else {
+            failure.addSuppressed(cause);
+          }
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Unpack interrupted", ex);
+    } finally {
+      executor.shutdownNow();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    reportLinks();
+  }
+
+  private void reportLinks() {
+    if (linker != null && linker.getLinkedFiles() > 0) {
+      getLog().info("Linked " + linker.getLinkedFiles() + " duplicate file(s), saving "
+              + linker.getLinkedBytes() + " bytes");
+    }
+  }
+
+  /**
+   * Groups the archives, whose selected entries overlap in the output
+   * directory. Each group keeps the order of the given archives.
+   *
+   * @param files the archives in extraction order
+   * @return the groups of archives, which can be extracted independently
+   */
+  protected List<List<File>> groupOverlapping(List<File> files) {
+    int[] parent = new int[files.size()];
+    for (int i = 0; i < parent.length; i++) {
+      parent[i] = i;
+    }
+
+    Map<String, Integer> owners = new HashMap<>();
+    for (int i = 0; i < files.size(); i++) {
+      File file = files.get(i);
+      List<String> entries = listEntries(file);
+      if (entries == null) {
+        // unknown content, so it may overlap with any other archive
+        for (int j = 0; j < parent.length; j++) {
+          union(parent, i, j);
+        }
+        continue;
+      }
+      for (String entry : entries) {
+        Integer owner = owners.putIfAbsent(entry, i);
+        if (owner != null && find(parent, owner) != find(parent, i)) {
+          getLog().info(file.getName() + " overlaps with " + files.get(owner).getName()
+                  + " (" + entry + "), extracting them in order");
+          union(parent, owner, i);
+        }
+      }
+    }
+
+    Map<Integer, List<File>> groups = new LinkedHashMap<>();
+    for (int i = 0; i < files.size(); i++) {
+      groups.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(files.get(i));
+    }
+    return new ArrayList<>(groups.values());
+  }
+
+  /**
+   * Lists the selected entries of an archive, as they are extracted. Only
+   * archives with a cheap listing are listed: zip archives by their central
+   * directory and uncompressed tar files by their index, which is cached for
+   * the extraction. Other archives had to be decompressed twice.
+   *
+   * @param file the archive, relative to the fileSet directory
+   * @return the normalized entry paths, or null if the archive is not listed
+   */
+  private List<String> listEntries(File file) {
+    File filePath = new File(fileSet.getDirectory(), file.getPath());
+    List<String> names;
+    try {
+      if (CompressedTarExtractor.isSupported(file.getName())) {
+        return null;
+      } else if (archiverManager.getUnArchiver(file) instanceof AbstractZipUnArchiver) {
+        names = new ParallelZipExtractor(filePath, outputDirectory, unpacker.getFileSelector(), 1).listEntries();
+      } else if (file.getName().toLowerCase(Locale.ROOT).endsWith(".tar")) {
+        names = new IndexedTarExtractor(filePath, outputDirectory, unpacker.getFileSelector(), getIndexFile(filePath))
+                .listEntries();
+      } else {
+        return null;
+      }
+
+      List<String> entries = new ArrayList<>(names.size());
+      for (String name : names) {
+        // as the target file system may be case insensitive
+        entries.add(Paths.get(name).normalize().toString().toLowerCase(Locale.ROOT));
+      }
+      return entries;
+    } catch (NoSuchArchiverException | IOException | InvalidPathException ex) {
+      getLog().debug("Cannot list " + file.getName() + ": " + ex.getMessage());
+      return null;
+    }
+  }
+
+  private static int find(int[] parent, int i) {
+    while (parent[i] != i) {
+      parent[i] = parent[parent[i]];
+      i = parent[i];
+    }
+    return i;
+  }
+
+  private static void union(int[] parent, int i, int j) {
+    int rootI = find(parent, i);
+    int rootJ = find(parent, j);
+    // the lower index becomes the root, so groups are ordered by their first archive
+    if (rootI < rootJ) {
+      parent[rootJ] = rootI;
+    } else {
+      parent[rootI] = rootJ;
     }
   }
 
@@ -85,33 +317,101 @@ public class UnpackMojo extends AbstractMojo {
   protected void unpack(File file) throws MojoFailureException {
     File filePath = new File(fileSet.getDirectory(), file.getPath());
 
+    Properties marker = null;
+    File markerFile = null;
+    if (incremental) {
+      markerFile = getMarkerFile(filePath);
+      marker = getMarker(filePath, readMarker(markerFile));
+      if (marker == null) {
+        getLog().info("Skipping unchanged " + file.getName());
+        return;
+      }
+    }
+
+    getLog().info("Unpacking " + file.getName() + " to " + outputDirectory);
     try {
-      UnArchiver unArchiver = archiverManager.getUnArchiver(file);
-      unArchiver.setIgnorePermissions(true);
+      unpacker.unpack(filePath, outputDirectory, getIndexFile(filePath));
+    } catch (Exception ex) {
+      throw new MojoFailureException("Unpack failed", ex);
+    }
+    writeMarker(markerFile, marker);
+  }
 
-      unArchiver.setSourceFile(filePath);
+  /**
+   * @param archive the archive to unpack
+   * @return the file to record the unpacked state of the archive in
+   */
+  private File getMarkerFile(File archive) {
+    String key = archive.getAbsolutePath() + "|" + outputDirectory.getAbsolutePath();
+    return new File(markersDirectory, "unpack-" + archive.getName() + "-" + DigestUtils.sha1Hex(key) + ".properties");
+  }
 
-      unArchiver.setDestDirectory(outputDirectory);
+  /**
+   * @param archive an uncompressed tar file
+   * @return the file to cache the entry offsets of the archive in
+   */
+  private File getIndexFile(File archive) {
+    return new File(markersDirectory, "unpack-" + archive.getName() + "-"
+            + DigestUtils.sha1Hex(archive.getAbsolutePath()) + ".index");
+  }
 
-      if (!ArrayUtils.isEmpty(includes) || !ArrayUtils.isEmpty(excludes)) {
-        IncludeExcludeFileSelector[] selectors
-                = new IncludeExcludeFileSelector[]{new IncludeExcludeFileSelector()};
+  /**
+   * Compares the archive with the state recorded, when it was unpacked
+   * before. The digest of the archive is only computed, if its size matches
+   * but its modification time does not.
+   *
+   * @param archive the archive to unpack
+   * @param previous the recorded state or null
+   * @return the current state of the archive to record after unpacking it, or
+   * null if it did not change since
+   * @throws MojoFailureException if the archive could not be read
+   */
+  private Properties getMarker(File archive, Properties previous) throws MojoFailureException {
+    Properties current = new Properties();
+    current.setProperty("path", archive.getAbsolutePath());
+    current.setProperty("size", Long.toString(archive.length()));
+    current.setProperty("lastModified", Long.toString(archive.lastModified()));
+    current.setProperty("outputDirectory", outputDirectory.getAbsolutePath());
+    current.setProperty("includes", includes != null ? String.join(",", includes) : "");
+    current.setProperty("excludes", excludes != null ? String.join(",", excludes) : "");
 
-        if (ArrayUtils.isNotEmpty(excludes)) {
-          selectors[0].setExcludes(excludes);
-        }
+    boolean sameConfig = previous != null;
+    for (String key : new String[]{"path", "size", "outputDirectory", "includes", "excludes"}) {
+      sameConfig = sameConfig && current.getProperty(key).equals(previous.getProperty(key));
+    }
+    if (sameConfig && current.getProperty("lastModified").equals(previous.getProperty("lastModified"))) {
+      return null;
+    }
 
-        if (ArrayUtils.isNotEmpty(includes)) {
-          selectors[0].setIncludes(includes);
-        }
+    try (InputStream in = Files.newInputStream(archive.toPath())) {
+      current.setProperty("sha256", DigestUtils.sha256Hex(in));
+    } catch (IOException ex) {
+      throw new MojoFailureException("unable to read archive: " + archive, ex);
+    }
+    if (sameConfig && current.getProperty("sha256").equals(previous.getProperty("sha256"))) {
+      // touched, but not changed
+      writeMarker(getMarkerFile(archive), current);
+      return null;
+    }
+    return current;
+  }
 
-        unArchiver.setFileSelectors(selectors);
-      }
-      
-      unArchiver.extract();
-      
-    } catch (Exception ex) {
-      throw new MojoFailureException("Unpack failed", ex);
+  private Properties readMarker(File markerFile) throws MojoFailureException {
+    try {
+      return ArchiveUnpacker.readMarker(markerFile);
+    } catch (IOException ex) {
+      throw new MojoFailureException("unable to read marker file: " + markerFile, ex);
+    }
+  }
+
+  private void writeMarker(File markerFile, Properties marker) throws MojoFailureException {
+    if (markerFile == null || marker == null) {
+      return;
+    }
+    try {
+      ArchiveUnpacker.writeMarker(markerFile, marker, "devsak unpack marker");
+    } catch (IOException ex) {
+      throw new MojoFailureException("unable to write marker file: " + markerFile, ex);
     }
   }
 
@@ -0,0 +1,197 @@
+/*
+ * UnpackWithDependenciesMojo
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import jdelker.maven.plugin.devsak.util.ArchiveUnpacker;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolverException;
+import org.codehaus.plexus.archiver.manager.ArchiverManager;
+
+/**
+ * Goal that resolves an artifact, including its dependencies, and unpacks
+ * them from the local repository to a defined location, without copying them
+ * first.
+ *
+ * @author delker
+ * @since 2.3
+ */
+@Mojo(name = "unpack-with-dependencies", defaultPhase = LifecyclePhase.PREPARE_PACKAGE, requiresProject = true)
+public class UnpackWithDependenciesMojo extends AbstractDependenciesMojo {
+
+  /**
+   * Location of the output, unless overridden by an ArtifactItem.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/unpacked-artifacts", required = true)
+  private File outputDirectory;
+
+  /**
+   * The entries to extract from each artifact.
+   */
+  @Parameter
+  private String[] includes;
+
+  /**
+   * The entries not to extract from any artifact.
+   */
+  @Parameter
+  private String[] excludes;
+
+  /**
+   * Number of threads to extract the entries of a single artifact.
+   */
+  @Parameter(property = "unpack.entryThreads", defaultValue = "1")
+  private int entryThreads;
+
+  /**
+   * Maximum number of bytes of the xz blocks buffered while decompressing a
+   * <code>.tar.xz</code> artifact with multiple "entryThreads".
+   */
+  @Parameter(property = "unpack.xzMemoryLimit", defaultValue = "268435456")
+  private long xzMemoryLimit;
+
+  /**
+   * If true, artifacts are skipped, which did not change since they were
+   * unpacked to the same location with the same <i>includes</i> and
+   * <i>excludes</i>. Unlike "incremental" of the unpack goal, this is enabled
+   * by default, as released artifacts in the local repository do not change,
+   * and it has a property of its own.
+   */
+  @Parameter(property = "unpack-with-dependencies.incremental", defaultValue = "true")
+  private boolean incremental;
+
+  /**
+   * To look up Archiver/UnArchiver implementations
+   */
+  @Component
+  private ArchiverManager archiverManager;
+
+  private ArchiveUnpacker unpacker;
+
+  /* ************************************************************************** */
+  @Override
+  public void execute()
+          throws MojoExecutionException, MojoFailureException {
+
+    if (artifactItems == null || artifactItems.isEmpty()) {
+      throw new MojoFailureException("artifactItems are required for unpack-with-dependencies");
+    }
+
+    unpacker = new ArchiveUnpacker(archiverManager, getLog());
+    unpacker.setSelection(includes, excludes);
+    unpacker.setEntryThreads(entryThreads, xzMemoryLimit);
+
+    for (ArtifactItem artifactItem : artifactItems) {
+      getLog().info("Processing " + artifactItem);
+
+      File outputDir = artifactItem.getOutputDirectory();
+      if (outputDir == null) {
+        outputDir = outputDirectory;
+      }
+
+      try {
+        for (Artifact a : resolveArtifacts(artifactItem)) {
+          unpackArtifact(a.getFile(), outputDir);
+        }
+      } catch (DependencyResolverException ex) {
+        throw new MojoExecutionException("failed to resolve dependencies", ex);
+      }
+    }
+  }
+
+  /**
+   * Unpacks an artifact from the local repository.
+   *
+   * @param file the file of the resolved artifact
+   * @param outputDir the directory to unpack to
+   * @throws MojoFailureException in case of an error.
+   */
+  protected void unpackArtifact(File file, File outputDir) throws MojoFailureException {
+    if (file == null || !file.isFile()) {
+      getLog().warn("Skipping unresolved artifact " + file);
+      return;
+    }
+    if (!unpacker.isSupported(file)) {
+      getLog().info("Skipping " + file.getName() + ", as it is no archive");
+      return;
+    }
+
+    File markerFile = getMarkerFile(file, outputDir);
+    Properties marker = getMarker(file, outputDir);
+    try {
+      if (incremental && marker.equals(ArchiveUnpacker.readMarker(markerFile))) {
+        getLog().info("Skipping unchanged " + file.getName());
+        return;
+      }
+    } catch (IOException ex) {
+      throw new MojoFailureException("unable to read marker file: " + markerFile, ex);
+    }
+
+    getLog().info("Unpacking " + file.getName() + " to " + outputDir);
+    try {
+      outputDir.mkdirs();
+      unpacker.unpack(file, outputDir, null);
+    } catch (Exception ex) {
+      throw new MojoFailureException("Unpack failed", ex);
+    }
+    try {
+      ArchiveUnpacker.writeMarker(markerFile, marker, "devsak unpack-with-dependencies marker");
+    } catch (IOException ex) {
+      throw new MojoFailureException("unable to write marker file: " + markerFile, ex);
+    }
+  }
+
+  /**
+   * @param artifact the artifact to unpack
+   * @param outputDir the directory to unpack to
+   * @return the file to record the unpacked state of the artifact in
+   */
+  private File getMarkerFile(File artifact, File outputDir) {
+    String key = artifact.getAbsolutePath() + "|" + outputDir.getAbsolutePath();
+    return new File(markersDirectory, "unpack-with-dependencies-" + artifact.getName() + "-"
+            + DigestUtils.sha1Hex(key) + ".properties");
+  }
+
+  /**
+   * Artifacts in the local repository are replaced rather than modified, so
+   * their size and modification time identify their content.
+   *
+   * @param artifact the artifact to unpack
+   * @param outputDir the directory to unpack to
+   * @return the current state of the artifact to record after unpacking it
+   */
+  private Properties getMarker(File artifact, File outputDir) {
+    Properties marker = new Properties();
+    marker.setProperty("path", artifact.getAbsolutePath());
+    marker.setProperty("size", Long.toString(artifact.length()));
+    marker.setProperty("lastModified", Long.toString(artifact.lastModified()));
+    marker.setProperty("outputDirectory", outputDir.getAbsolutePath());
+    marker.setProperty("includes", includes != null ? String.join(",", includes) : "");
+    marker.setProperty("excludes", excludes != null ? String.join(",", excludes) : "");
+    return marker;
+  }
+}
@@ -20,48 +20,18 @@
 package jdelker.maven.plugin.devsak;
 
 import java.io.File;
-import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.AuthCache;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpPut;
-import org.apache.http.client.protocol.HttpClientContext;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.FileEntity;
-import org.apache.http.impl.auth.BasicScheme;
-import org.apache.http.impl.client.BasicAuthCache;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.client.ProxyAuthenticationStrategy;
-import org.apache.http.util.EntityUtils;
-import org.apache.maven.artifact.repository.ArtifactRepository;
-import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
-import org.apache.maven.artifact.repository.Authentication;
-import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.AbstractMojo;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import jdelker.maven.plugin.devsak.util.FileSetWalker;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.repository.Proxy;
-import org.apache.maven.repository.RepositorySystem;
 import org.apache.maven.shared.model.fileset.FileSet;
 import org.apache.maven.shared.model.fileset.util.FileSetManager;
 
@@ -71,7 +41,7 @@ import org.apache.maven.shared.model.fileset.util.FileSetManager;
  */
 @Mojo(name = "upload", requiresProject = false, defaultPhase = LifecyclePhase.DEPLOY)
 public class UploadMojo
-        extends AbstractMojo {
+        extends AbstractUploadMojo {
 
   /**
    * The path to the file to be uploaded.
@@ -87,28 +57,6 @@ public class UploadMojo
   @Parameter
   private FileSet fileSet;
 
-  /**
-   * The server Id in settings.xml with credentials to use.
-   *
-   */
-  @Parameter(property = "upload.serverId")
-  protected String serverId;
-
-  /**
-   * The base URL of the server, ie http://server.example.com/.
-   *
-   */
-  @Parameter(property = "upload.serverUrl")
-  protected String serverUrl;
-
-  /**
-   * The server path where the file will be uploaded, ie path/to/file.ext. Will
-   * be appended to the <i>serverUrl</i> parameter.
-   *
-   */
-  @Parameter(property = "upload.serverPath", defaultValue="/")
-  private String serverPath;
-
   /**
    * If true, do not fail build when file is missing.
    *
@@ -116,215 +64,103 @@ public class UploadMojo
   @Parameter(property = "upload.ignoreMissing", defaultValue = "false")
   private boolean ignoreMissingFile;
 
-  @Parameter(property = "session")
-  protected MavenSession session;
-
   /**
-   * Set to true to skip execution.
+   * If true, the path of each file relative to the <i>fileSet</i> directory
+   * is appended to the target URL, so a whole directory tree can be uploaded
+   * in one execution. <i>serverPath</i> then denotes the target directory. A
+   * single <i>file</i> is uploaded by its name.
    *
    */
-  @Parameter(property = "upload.skip", defaultValue = "false")
-  protected boolean skip;
+  @Parameter(property = "upload.preservePaths", defaultValue = "false")
+  protected boolean preservePaths;
 
   /**
-   * Set to true if the server requires credentials in the initial request.
+   * If true, the <i>fileSet</i> directory is scanned in the background while
+   * the files found so far are already uploaded, instead of collecting all
+   * files before the first upload. Recommended for large trees.
    *
    */
-  @Parameter(property = "upload.preemptiveAuth", defaultValue = "false")
-  protected boolean preemptiveAuth;
+  @Parameter(property = "upload.streamingScan", defaultValue = "false")
+  protected boolean streamingScan;
 
   /**
-   * Custom HTTP headers to add to each request.
+   * Maximum number of scanned files buffered ahead of the uploads, if
+   * <i>streamingScan</i> is set.
    *
    */
-  @Parameter
-  protected Map<String, String> headers;
+  @Parameter(property = "upload.queueSize", defaultValue = "1000")
+  protected int queueSize;
 
-  /**
-   * Use POST instead of PUT
-   *
-   */
-  @Parameter(property = "upload.post", defaultValue = "false")
-  protected boolean usePOST;
-
-  @Component
-  protected RepositorySystem repositorySystem;
-
-  @Component
-  protected ArtifactRepositoryLayout repositoryLayout;
+  private FileSetWalker walker;
 
   @Override
   public void execute()
           throws MojoExecutionException, MojoFailureException {
-
-    if (skip) {
-      getLog().info("Skipping execution per configuration");
-      return;
-    }
-
-    List<File> filesToUpload = getFiles();
-
-    ArtifactRepository repository = getArtifactRepository();
-
-    CloseableHttpClient client = getHttpClient(repository);
-
-    String url = getTargetUrl(repository);
-
-    for (File f : filesToUpload) {
-      if (ignoreMissingFile && !f.exists()) {
-        getLog().info("File does not exist, ignoring " + f.getAbsolutePath());
-        continue;
+    try {
+      super.execute();
+      if (walker != null && walker.getCount() == 0) {
+        getLog().info("No files found from fileSet.");
+      }
+    } finally {
+      if (walker != null) {
+        walker.close();
       }
-      uploadFile(client, f, url);
     }
   }
 
-  protected CloseableHttpClient getHttpClient(ArtifactRepository repository)
-          throws MojoExecutionException {
-    HttpClientBuilder clientBuilder = HttpClients.custom();
-    CredentialsProvider credsProvider = null;
-
-    Authentication authentication = repository.getAuthentication();
-    if (authentication != null) {
-      getLog().debug("Found credentials: username="
-              + authentication.getUsername()
-              + " password="
-              + authentication.getPassword());
-      credsProvider = new BasicCredentialsProvider();
-      credsProvider.setCredentials(
-              new AuthScope(AuthScope.ANY),
-              new UsernamePasswordCredentials(authentication.getUsername(), authentication.getPassword()));
-      clientBuilder.setDefaultCredentialsProvider(credsProvider);
-    }
-
-    Proxy proxy = repository.getProxy();
-    if (proxy != null) {
-      // NonProxyHosts is handled by ArtifactRepository, the Proxy will not be present here for NonProxyHosts
-      if (proxy.getProtocol() == null || proxy.getProtocol().equalsIgnoreCase(Proxy.PROXY_HTTP)) {
-        getLog().debug("Found Proxy configuration: " + proxy.getHost() + ":" + proxy.getPort());
-        HttpHost proxyHost = new HttpHost(proxy.getHost(), proxy.getPort());
-        clientBuilder.setProxy(proxyHost);
-
-        if (proxy.getUserName() != null) {
-          getLog().debug("Found proxy credentials: username=" + proxy.getUserName());
-          // Add CredentialsProvider if one was not added for target host Authentication
-          if (credsProvider == null) {
-            credsProvider = new BasicCredentialsProvider();
-            clientBuilder.setDefaultCredentialsProvider(credsProvider);
-          }
-          credsProvider.setCredentials(
-                  new AuthScope(proxyHost),
-                  new UsernamePasswordCredentials(proxy.getUserName(), proxy.getPassword()));
-          clientBuilder.setProxyAuthenticationStrategy(new ProxyAuthenticationStrategy());
-        }
-      } else {
-        throw new MojoExecutionException("Proxy protocol " + proxy.getProtocol() + " is not supported yet");
-      }
+  @Override
+  protected Iterable<File> getFilesToUpload() throws MojoFailureException {
+    if (streamingScan && fileSet != null) {
+      FileSetWalker fileSetWalker = new FileSetWalker(fileSet, queueSize);
+      walker = fileSetWalker;
+      File singleFile = getFile();
+      return () -> Stream.concat(Stream.ofNullable(singleFile),
+              StreamSupport.stream(fileSetWalker.spliterator(), false)).iterator();
     }
-    return clientBuilder.build();
+    return getFiles();
   }
 
-  protected ArtifactRepository getArtifactRepository() {
-    Objects.requireNonNull(serverUrl, "serverUrl must not be null");
-
-    ArtifactRepositoryPolicy policy = new ArtifactRepositoryPolicy();
-    ArtifactRepository repository
-            = repositorySystem.createArtifactRepository(serverId, serverUrl, repositoryLayout, policy, policy);
-
-    List<ArtifactRepository> repositories = new ArrayList<>();
-    repositories.add(repository);
-
-    // repositorySystem.injectMirror( artifactRepositories, session.getRequest().getMirrors() );
-    repositorySystem.injectProxy(repositories, session.getRequest().getProxies());
-
-    repositorySystem.injectAuthentication(repositories, session.getRequest().getServers());
-
-    repository = repositories.get(0);
-    return repository;
+  @Override
+  protected boolean isPreservePaths() {
+    return preservePaths;
   }
 
-  protected void uploadFile(CloseableHttpClient client, File file, String targetUrl)
-          throws MojoExecutionException {
-    getLog().info("Uploading " + file.getAbsolutePath() + " to " + targetUrl);
-    HttpEntityEnclosingRequestBase request;
-    if (usePOST) {
-      request = new HttpPost(targetUrl);
-    } else {
-      request = new HttpPut(targetUrl);
-    }
-    CloseableHttpResponse response = null;
-    try {
-      // Set Content type
-      ContentType contentType = null;
-      if (file.getName().endsWith(".xml")) {
-        contentType = ContentType.APPLICATION_XML;
-      }
-
-      // Add the file to the PUT request
-      request.setEntity(new FileEntity(file, contentType));
-
-      if (null != headers) {
-        for (Map.Entry<String, String> entry : headers.entrySet()) {
-          request.addHeader(entry.getKey(), entry.getValue());
-        }
-      }
-
-      if (preemptiveAuth) {
-        // Auth target host
-        URL aURL = new URI(targetUrl).toURL();
-        HttpHost target = new HttpHost(aURL.getHost(), aURL.getPort(), aURL.getProtocol());
-        // Create AuthCache instance
-        AuthCache authCache = new BasicAuthCache();
-        // Generate BASIC scheme object and add it to the local auth cache
-        BasicScheme basicAuth = new BasicScheme();
-        authCache.put(target, basicAuth);
-        // Add AuthCache to the execution context
-        HttpClientContext localContext = HttpClientContext.create();
-        localContext.setAuthCache(authCache);
-        // Execute request with pre-emptive authentication
-        response = client.execute(request, localContext);
-      } else {
-        // Execute request, server will prompt for authentication if needed
-        response = client.execute(request);
-      }
-
-      int status = response.getStatusLine().getStatusCode();
-      if (status < 200 || status > 299) {
-        String message = "Could not upload file: " + response.getStatusLine().toString();
-        getLog().error(message);
-        String responseBody = EntityUtils.toString(response.getEntity());
-        if (responseBody != null) {
-          getLog().info(responseBody);
-        }
-        throw new MojoExecutionException(message);
+  /**
+   * @param file the file to upload
+   * @return the path of the file relative to the <i>fileSet</i> directory,
+   * with '/' as separator, or its name if it is not part of the fileSet
+   */
+  @Override
+  protected String getRelativePath(File file) {
+    if (fileSet != null && fileSet.getDirectory() != null) {
+      Path directory = Paths.get(fileSet.getDirectory()).toAbsolutePath().normalize();
+      Path path = file.toPath().toAbsolutePath().normalize();
+      if (path.startsWith(directory) && !path.equals(directory)) {
+        return directory.relativize(path).toString().replace(File.separatorChar, '/');
       }
-    } catch (IOException e) {
-      throw new MojoExecutionException("Could not upload file: ", e);
-    } catch (URISyntaxException e) {
-      throw new MojoExecutionException("Invalid URL: " + targetUrl, e);
-    } finally {
-      request.releaseConnection();
     }
+    return file.getName();
   }
 
-  protected String getTargetUrl(ArtifactRepository repository) {
-    StringBuilder sb = new StringBuilder(repository.getUrl());
-
-    if (!repository.getUrl().endsWith("/") && !serverPath.startsWith("/")) {
-      sb.append("/");
+  /**
+   * @return the single <i>file</i> to upload, or null if there is none or
+   * it is missing and <i>ignoreMissingFile</i> is set
+   */
+  private File getFile() {
+    if (file != null && ignoreMissingFile && !file.exists()) {
+      getLog().info("File does not exist, ignoring " + file.getAbsolutePath());
+      return null;
     }
-
-    sb.append(serverPath);
-
-    return sb.toString();
+    return file;
   }
 
   protected List<File> getFiles() throws MojoFailureException {
 
     List<File> fileList = new ArrayList<>();
 
-    if (file != null) {
-      fileList.add(file);
+    File singleFile = getFile();
+    if (singleFile != null) {
+      fileList.add(singleFile);
     }
 
     if (fileSet != null) {
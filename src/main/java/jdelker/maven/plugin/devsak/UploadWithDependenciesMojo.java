@@ -0,0 +1,183 @@
+/*
+ * UploadWithDependenciesMojo
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.DefaultProjectBuildingRequest;
+import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolver;
+import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolverException;
+
+/**
+ * Goal that resolves an artifact, including its dependencies, and uploads
+ * them from the local repository in repository layout, ie. to mirror them to
+ * a raw repository.
+ *
+ * @author delker
+ * @since 2.3
+ */
+@Mojo(name = "upload-with-dependencies", defaultPhase = LifecyclePhase.DEPLOY, requiresProject = true)
+public class UploadWithDependenciesMojo extends AbstractUploadMojo {
+
+  /**
+   * Collection of ArtifactItems to work on, as with
+   * <i>copy-with-dependencies</i>. This goal uploads files, so it cannot
+   * extend {@link AbstractDependenciesMojo}, but resolves the items the same
+   * way through {@link ArtifactItemResolver}.
+   *
+   * See <a href="./usage.html">Usage</a> for details.
+   */
+  @Parameter
+  private List<ArtifactItem> artifactItems;
+
+  /**
+   * If true, files are not uploaded, if the server has them already (HEAD).
+   * Released artifacts do not change, so they need not be uploaded again.
+   */
+  @Parameter(property = "upload.skipExisting", defaultValue = "true")
+  private boolean skipExisting;
+
+  @Component
+  private DependencyResolver dependencyResolver;
+
+  /**
+   * The path of each resolved file in repository layout.
+   */
+  private final Map<File, String> repositoryPaths = new LinkedHashMap<>();
+
+  private final AtomicInteger existingFiles = new AtomicInteger();
+
+  /* ************************************************************************** */
+  @Override
+  public void execute()
+          throws MojoExecutionException, MojoFailureException {
+
+    if (artifactItems == null || artifactItems.isEmpty()) {
+      throw new MojoFailureException("artifactItems are required for upload-with-dependencies");
+    }
+
+    super.execute();
+    if (existingFiles.get() > 0) {
+      getLog().info("Skipped " + existingFiles.get() + " existing file(s)");
+    }
+  }
+
+  /**
+   * Resolves the artifacts. Each file is uploaded once, even if it is a
+   * dependency of several items.
+   */
+  @Override
+  protected Iterable<File> getFilesToUpload() throws MojoExecutionException {
+    ArtifactItemResolver resolver = new ArtifactItemResolver(dependencyResolver,
+            new DefaultProjectBuildingRequest(session.getProjectBuildingRequest()));
+    for (ArtifactItem artifactItem : artifactItems) {
+      getLog().info("Processing " + artifactItem);
+      try {
+        for (Artifact a : resolver.resolve(artifactItem)) {
+          if (a.getFile() != null) {
+            repositoryPaths.putIfAbsent(a.getFile(), repositoryLayout.pathOf(a));
+          }
+        }
+      } catch (DependencyResolverException ex) {
+        throw new MojoExecutionException("failed to resolve dependencies", ex);
+      }
+    }
+    return new ArrayList<>(repositoryPaths.keySet());
+  }
+
+  @Override
+  protected boolean isPreservePaths() {
+    return true;
+  }
+
+  /**
+   * @param file a resolved file
+   * @return the path of the file in repository layout
+   */
+  @Override
+  protected String getRelativePath(File file) {
+    String path = repositoryPaths.get(file);
+    return path != null ? path : file.getName();
+  }
+
+  /**
+   * Uploads a single file, unless <i>skipExisting</i> is set and the server
+   * has it already.
+   */
+  @Override
+  protected void processFile(CloseableHttpClient client, File file, String targetUrl)
+          throws MojoExecutionException {
+    if (skipExisting && exists(client, targetUrl)) {
+      getLog().info("Skipping existing " + targetUrl);
+      existingFiles.incrementAndGet();
+      return;
+    }
+    super.processFile(client, file, targetUrl);
+  }
+
+  /**
+   * Uploads a batch of files, without the ones the server has already, if
+   * <i>skipExisting</i> is set.
+   */
+  @Override
+  protected void processBatch(CloseableHttpClient client, List<File> files, String targetUrl)
+          throws MojoExecutionException {
+    List<File> batch = files;
+    if (skipExisting) {
+      batch = new ArrayList<>();
+      for (File f : files) {
+        String fileUrl = getTargetUrl(targetUrl, f);
+        if (exists(client, fileUrl)) {
+          getLog().info("Skipping existing " + fileUrl);
+          existingFiles.incrementAndGet();
+        } else {
+          batch.add(f);
+        }
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+    }
+    super.processBatch(client, batch, targetUrl);
+  }
+
+  private boolean exists(CloseableHttpClient client, String targetUrl) {
+    try (CloseableHttpResponse response = execute(client, new HttpHead(targetUrl))) {
+      int status = response.getStatusLine().getStatusCode();
+      return status >= 200 && status <= 299;
+    } catch (IOException e) {
+      getLog().debug("Failed to check " + targetUrl, e);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * ArchiveEntity
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.function.Function;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * Entity, which streams a set of files as zip or tar archive. The archive is
+ * written directly to the connection, so no temporary file is needed. As the
+ * files are read again on every write, the entity is repeatable.
+ *
+ * @author delker
+ */
+public class ArchiveEntity extends AbstractHttpEntity {
+
+  public static final String ZIP = "zip";
+
+  public static final String TAR = "tar";
+
+  private final List<File> files;
+
+  private final Function<File, String> entryNames;
+
+  private final String format;
+
+  /**
+   * @param files the files to archive
+   * @param entryNames maps each file to its path within the archive
+   * @param format the archive format, {@link #ZIP} or {@link #TAR}
+   */
+  public ArchiveEntity(List<File> files, Function<File, String> entryNames, String format) {
+    if (!ZIP.equals(format) && !TAR.equals(format)) {
+      throw new IllegalArgumentException("Unsupported archive format: " + format);
+    }
+    this.files = files;
+    this.entryNames = entryNames;
+    this.format = format;
+    setContentType(ZIP.equals(format) ? "application/zip" : "application/x-tar");
+    setChunked(true);
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return true;
+  }
+
+  @Override
+  public long getContentLength() {
+    return -1;
+  }
+
+  @Override
+  public InputStream getContent() {
+    throw new UnsupportedOperationException("ArchiveEntity can only be written");
+  }
+
+  @Override
+  public boolean isStreaming() {
+    return false;
+  }
+
+  @Override
+  public void writeTo(OutputStream outStream) throws IOException {
+    ArchiveOutputStream archive;
+    if (ZIP.equals(format)) {
+      archive = new ZipArchiveOutputStream(outStream);
+    } else {
+      TarArchiveOutputStream tar = new TarArchiveOutputStream(outStream);
+      tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+      tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+      archive = tar;
+    }
+
+    for (File file : files) {
+      archive.putArchiveEntry(archive.createArchiveEntry(file, entryNames.apply(file)));
+      Files.copy(file.toPath(), archive);
+      archive.closeArchiveEntry();
+    }
+    // finish, but do not close the connection's stream
+    archive.finish();
+    outStream.flush();
+  }
+}
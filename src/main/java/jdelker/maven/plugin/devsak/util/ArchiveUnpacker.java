@@ -0,0 +1,238 @@
+/*
+ * ArchiveUnpacker
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Properties;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.UnArchiver;
+import org.codehaus.plexus.archiver.manager.ArchiverManager;
+import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
+import org.codehaus.plexus.archiver.zip.AbstractZipUnArchiver;
+import org.codehaus.plexus.components.io.fileselectors.IncludeExcludeFileSelector;
+
+/**
+ * Unpacks archives for the unpack goals.
+ *
+ * <p>
+ * xz and zstd compressed tar files are extracted by
+ * {@link CompressedTarExtractor}, zip archives by {@link ParallelZipExtractor}
+ * and uncompressed tar files with <i>includes</i> by
+ * {@link IndexedTarExtractor}, if an index file is given. All other archives,
+ * and the ones these cannot handle, are extracted by the plexus
+ * unarchivers.</p>
+ *
+ * @author delker
+ */
+public class ArchiveUnpacker {
+
+  private final ArchiverManager archiverManager;
+
+  private final Log log;
+
+  private String[] includes;
+
+  private String[] excludes;
+
+  private int entryThreads = 1;
+
+  private long xzMemoryLimit = ParallelXZInputStream.DEFAULT_MEMORY_LIMIT;
+
+  private boolean skipUpToDate;
+
+  private ContentLinker linker;
+
+  /**
+   * @param archiverManager looks up the plexus unarchivers
+   * @param log the log to report to
+   */
+  public ArchiveUnpacker(ArchiverManager archiverManager, Log log) {
+    this.archiverManager = archiverManager;
+    this.log = log;
+  }
+
+  /**
+   * @param includes the entries to extract, or null for all
+   * @param excludes the entries not to extract, or null for none
+   */
+  public void setSelection(String[] includes, String[] excludes) {
+    this.includes = includes;
+    this.excludes = excludes;
+  }
+
+  /**
+   * @param entryThreads the number of threads to extract the entries of a zip
+   * archive, respectively to decompress a multi-block xz file
+   * @param xzMemoryLimit the maximum number of bytes of the xz blocks
+   * buffered by these threads
+   */
+  public void setEntryThreads(int entryThreads, long xzMemoryLimit) {
+    this.entryThreads = entryThreads;
+    this.xzMemoryLimit = xzMemoryLimit;
+  }
+
+  /**
+   * @param skipUpToDate if true, entries of zip archives are not written,
+   * whose target file has the same size and CRC
+   */
+  public void setSkipUpToDate(boolean skipUpToDate) {
+    this.skipUpToDate = skipUpToDate;
+  }
+
+  /**
+   * @param linker links entries of zip archives to files with identical
+   * content, or null to always write the entries
+   */
+  public void setLinker(ContentLinker linker) {
+    this.linker = linker;
+  }
+
+  /**
+   * @param file an archive
+   * @return true, if the archive can be unpacked
+   */
+  public boolean isSupported(File file) {
+    if (CompressedTarExtractor.isSupported(file.getName())) {
+      return true;
+    }
+    try {
+      archiverManager.getUnArchiver(file);
+      return true;
+    } catch (NoSuchArchiverException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Extracts the selected entries of an archive.
+   *
+   * @param file the archive
+   * @param destDirectory the directory to extract to
+   * @param indexFile the file to cache the entry offsets of an uncompressed
+   * tar file in, or null to read it as a whole
+   * @throws IOException if the archive could not be read or an entry could
+   * not be written
+   * @throws NoSuchArchiverException if the file is no supported archive
+   * @throws ArchiverException if the plexus unarchiver failed
+   */
+  public void unpack(File file, File destDirectory, File indexFile)
+          throws IOException, NoSuchArchiverException, ArchiverException {
+    if (CompressedTarExtractor.isSupported(file.getName())) {
+      CompressedTarExtractor extractor = new CompressedTarExtractor(file, destDirectory, getFileSelector(), entryThreads);
+      extractor.setMemoryLimit(xzMemoryLimit);
+      extractor.extract();
+      return;
+    }
+
+    UnArchiver unArchiver = archiverManager.getUnArchiver(file);
+
+    // zip archives are read through their channel, which enables concurrent,
+    // selective and zero-copy extraction
+    if (unArchiver instanceof AbstractZipUnArchiver) {
+      ParallelZipExtractor extractor = new ParallelZipExtractor(file, destDirectory, getFileSelector(), entryThreads);
+      extractor.setSkipUpToDate(skipUpToDate);
+      extractor.setLinker(linker);
+      if (extractor.extract()) {
+        if (extractor.getSkippedEntries() > 0) {
+          log.info("Skipped " + extractor.getSkippedEntries() + " up-to-date entries of " + file.getName());
+        }
+        return;
+      }
+      log.debug("Extracting " + file.getName() + " sequentially, as it contains unsupported entries");
+    } else if (indexFile != null && ArrayUtils.isNotEmpty(includes)
+            && file.getName().toLowerCase(Locale.ROOT).endsWith(".tar")) {
+      IndexedTarExtractor extractor = new IndexedTarExtractor(file, destDirectory, getFileSelector(), indexFile);
+      if (extractor.extract()) {
+        log.debug("Extracted " + extractor.getExtractedEntries() + " entries of " + file.getName());
+        return;
+      }
+      log.debug("Extracting " + file.getName() + " sequentially, as it contains unsupported entries");
+    }
+
+    // the plexus unarchivers replace existing files (Files.copy with REPLACE_EXISTING),
+    // so files linked to them keep their content
+    unArchiver.setIgnorePermissions(true);
+    unArchiver.setSourceFile(file);
+    unArchiver.setDestDirectory(destDirectory);
+    IncludeExcludeFileSelector selector = getFileSelector();
+    if (selector != null) {
+      unArchiver.setFileSelectors(new IncludeExcludeFileSelector[]{selector});
+    }
+    unArchiver.extract();
+  }
+
+  /**
+   * @return the selector for <i>includes</i> and <i>excludes</i>, or null if
+   * all entries are extracted
+   */
+  public IncludeExcludeFileSelector getFileSelector() {
+    if (ArrayUtils.isEmpty(includes) && ArrayUtils.isEmpty(excludes)) {
+      return null;
+    }
+    IncludeExcludeFileSelector selector = new IncludeExcludeFileSelector();
+
+    if (ArrayUtils.isNotEmpty(excludes)) {
+      selector.setExcludes(excludes);
+    }
+
+    if (ArrayUtils.isNotEmpty(includes)) {
+      selector.setIncludes(includes);
+    }
+    return selector;
+  }
+
+  /**
+   * Reads the state of an archive, recorded when it was unpacked.
+   *
+   * @param markerFile the file the state was recorded in
+   * @return the recorded state, or null if there is none
+   * @throws IOException if the marker file could not be read
+   */
+  public static Properties readMarker(File markerFile) throws IOException {
+    if (!markerFile.exists()) {
+      return null;
+    }
+    Properties marker = new Properties();
+    try (InputStream in = Files.newInputStream(markerFile.toPath())) {
+      marker.load(in);
+    }
+    return marker;
+  }
+
+  /**
+   * Records the state of an unpacked archive.
+   *
+   * @param markerFile the file to record the state in
+   * @param marker the state of the archive
+   * @param comment the comment of the marker file
+   * @throws IOException if the marker file could not be written
+   */
+  public static void writeMarker(File markerFile, Properties marker, String comment) throws IOException {
+    markerFile.getParentFile().mkdirs();
+    try (OutputStream out = Files.newOutputStream(markerFile.toPath())) {
+      marker.store(out, comment);
+    }
+  }
+}
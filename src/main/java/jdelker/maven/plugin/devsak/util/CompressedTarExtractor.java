@@ -0,0 +1,233 @@
+/*
+ * CompressedTarExtractor
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.ReadAheadInputStream;
+import org.codehaus.plexus.components.io.fileselectors.FileInfo;
+import org.codehaus.plexus.components.io.fileselectors.FileSelector;
+import org.codehaus.plexus.util.FileUtils;
+import org.tukaani.xz.XZInputStream;
+
+/**
+ * Extracts xz and zstd compressed tar files (<code>.tar.xz</code>,
+ * <code>.txz</code>, <code>.tar.zst</code>, <code>.tzst</code>).
+ *
+ * <p>
+ * Multi-block xz files are decompressed by several threads through
+ * {@link ParallelXZInputStream}. zstd frames cannot be decoded concurrently,
+ * so the decompression runs ahead in a separate thread instead, while the
+ * entries are written. The result matches the plexus
+ * <code>TarUnArchiver</code>: entries are selected through a
+ * {@link FileSelector}, existing files are overwritten, the modification time
+ * is set from the entry and permissions are ignored. Entries and links,
+ * which lead out of the target directory, are rejected.</p>
+ *
+ * @author delker
+ */
+public class CompressedTarExtractor {
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private final File sourceFile;
+
+  private final File destDirectory;
+
+  private final FileSelector selector;
+
+  private final int threads;
+
+  private long memoryLimit = ParallelXZInputStream.DEFAULT_MEMORY_LIMIT;
+
+  /**
+   * @param sourceFile the compressed tar file to extract
+   * @param destDirectory the directory to extract to
+   * @param selector selects the entries to extract, or null for all
+   * @param threads the number of threads to decompress multi-block xz files
+   */
+  public CompressedTarExtractor(File sourceFile, File destDirectory, FileSelector selector, int threads) {
+    this.sourceFile = sourceFile;
+    this.destDirectory = destDirectory;
+    this.selector = selector;
+    this.threads = threads;
+  }
+
+  /**
+   * Limits the memory of the blocks buffered by parallel xz decompression.
+   * Fewer threads are used, if the blocks do not fit.
+   *
+   * @param memoryLimit the maximum number of bytes
+   */
+  public void setMemoryLimit(long memoryLimit) {
+    this.memoryLimit = memoryLimit;
+  }
+
+  /**
+   * @param fileName the name of an archive
+   * @return true, if the archive is a tar file compressed by xz or zstd
+   */
+  public static boolean isSupported(String fileName) {
+    String name = fileName.toLowerCase(Locale.ROOT);
+    return isXZ(name) || isZstd(name);
+  }
+
+  private static boolean isXZ(String name) {
+    return name.endsWith(".tar.xz") || name.endsWith(".txz");
+  }
+
+  private static boolean isZstd(String name) {
+    return name.endsWith(".tar.zst") || name.endsWith(".tzst");
+  }
+
+  /**
+   * Extracts the selected entries.
+   *
+   * @throws IOException if the archive could not be read or an entry could
+   * not be written
+   */
+  public void extract() throws IOException {
+    try (TarArchiveInputStream tar = new TarArchiveInputStream(decompress())) {
+      TarArchiveEntry entry;
+      while ((entry = tar.getNextTarEntry()) != null) {
+        if (selector != null && !selector.isSelected(new EntryInfo(tar, entry))) {
+          continue;
+        }
+        extractEntry(tar, entry);
+      }
+    }
+  }
+
+  private InputStream decompress() throws IOException {
+    String name = sourceFile.getName().toLowerCase(Locale.ROOT);
+    if (isXZ(name)) {
+      InputStream parallel = ParallelXZInputStream.open(sourceFile, threads, memoryLimit);
+      if (parallel != null) {
+        return parallel;
+      }
+      return readAhead(new XZInputStream(new BufferedInputStream(Files.newInputStream(sourceFile.toPath()))));
+    }
+    if (isZstd(name)) {
+      return readAhead(new ZstdInputStream(new BufferedInputStream(Files.newInputStream(sourceFile.toPath()))));
+    }
+    throw new IOException("Unsupported archive: " + sourceFile.getName());
+  }
+
+  /**
+   * Decompresses ahead of the reader in a separate thread.
+   */
+  private static InputStream readAhead(InputStream in) throws IOException {
+    return ReadAheadInputStream.builder().setInputStream(in).setBufferSize(BUFFER_SIZE).get();
+  }
+
+  private void extractEntry(TarArchiveInputStream tar, TarArchiveEntry entry) throws IOException {
+    File target = FileUtils.resolveFile(destDirectory, entry.getName());
+    if (!isInside(target)) {
+      throw new IOException("Entry is outside of the target directory (" + entry.getName() + ")");
+    }
+
+    if (entry.isDirectory()) {
+      target.mkdirs();
+    } else {
+      File parent = target.getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      if (entry.isSymbolicLink()) {
+        // the link is resolved relative to its directory and must not lead out of
+        // the target directory, as later entries may be written through it
+        File linkTarget = new File(entry.getLinkName());
+        if (linkTarget.isAbsolute() || !isInside(new File(target.getParentFile(), entry.getLinkName()))) {
+          throw new IOException("Link is outside of the target directory ("
+                  + entry.getName() + " -> " + entry.getLinkName() + ")");
+        }
+        Files.deleteIfExists(target.toPath());
+        Files.createSymbolicLink(target.toPath(), linkTarget.toPath());
+        return;
+      }
+      if (entry.isLink()) {
+        // a hard link refers to an earlier entry, which is copied, if it was extracted
+        File linked = FileUtils.resolveFile(destDirectory, entry.getLinkName());
+        if (!isInside(linked)) {
+          throw new IOException("Link is outside of the target directory ("
+                  + entry.getName() + " -> " + entry.getLinkName() + ")");
+        }
+        if (!linked.isFile()) {
+          return;
+        }
+        Files.copy(linked.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } else {
+        Files.copy(tar, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    target.setLastModified(entry.getModTime().getTime());
+  }
+
+  private boolean isInside(File file) throws IOException {
+    return file.getCanonicalFile().toPath().startsWith(destDirectory.getCanonicalFile().toPath());
+  }
+
+  /**
+   * Presents an entry to the {@link FileSelector}.
+   */
+  private static class EntryInfo implements FileInfo {
+
+    private final TarArchiveInputStream tar;
+
+    private final TarArchiveEntry entry;
+
+    EntryInfo(TarArchiveInputStream tar, TarArchiveEntry entry) {
+      this.tar = tar;
+      this.entry = entry;
+    }
+
+    @Override
+    public String getName() {
+      return entry.getName();
+    }
+
+    @Override
+    public InputStream getContents() {
+      return CloseShieldInputStream.wrap(tar);
+    }
+
+    @Override
+    public boolean isFile() {
+      return entry.isFile();
+    }
+
+    @Override
+    public boolean isDirectory() {
+      return entry.isDirectory();
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+      return entry.isSymbolicLink();
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * ContentLinker
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Replaces extracted files with identical content by hard links to a single
+ * copy.
+ *
+ * <p>
+ * Extracted files are registered by their size and CRC, as known from the
+ * archive, together with the SHA-256 digest computed while they were written.
+ * When a later entry has the same size and CRC, its digest is compared with
+ * the registered one, and the target is linked to that file instead of being
+ * written. The registered file is not linked to, if it was replaced since,
+ * which is told by its file key (ie. the inode). Where the file system has no
+ * file keys, the registered file is hashed again instead.</p>
+ *
+ * <p>
+ * The first entry of a size and CRC claims it, until its file is registered.
+ * Entries with the same size and CRC, which are extracted concurrently, wait
+ * for that file instead of writing their own copy.</p>
+ *
+ * <p>
+ * Linked files share their content and their modification time, which is the
+ * time of the entry extracted last. Changing one of them changes all of
+ * them.</p>
+ *
+ * @author delker
+ */
+public class ContentLinker {
+
+  private final Map<String, CompletableFuture<Registration>> files = new ConcurrentHashMap<>();
+
+  private final AtomicInteger linkedFiles = new AtomicInteger();
+
+  private final AtomicLong linkedBytes = new AtomicLong();
+
+  /**
+   * Registers an extracted file as the copy to link identical content to.
+   * It must be called, whenever {@link #link} returned false, even if the
+   * file could not be written. The first file registered for a size and CRC
+   * is kept.
+   *
+   * @param size the size of the content
+   * @param crc the CRC32 of the content
+   * @param file the extracted file, or null if it could not be written
+   * @param digest the SHA-256 digest of the written content, or null if the
+   * file could not be written
+   */
+  public void register(long size, long crc, Path file, byte[] digest) {
+    Registration registration = file != null && digest != null
+            ? new Registration(file, digest, getFileKey(file)) : null;
+    files.computeIfAbsent(key(size, crc), k -> new CompletableFuture<>()).complete(registration);
+  }
+
+  /**
+   * Links the target to a registered file with the same content.
+   *
+   * @param size the size of the content
+   * @param crc the CRC32 of the content
+   * @param content opens the content to compare
+   * @param target the file to create
+   * @return true, if the target was linked. Otherwise, the content must be
+   * written to the target and {@link #register registered}.
+   * @throws IOException if the content could not be read
+   */
+  public boolean link(long size, long crc, ContentSupplier content, Path target) throws IOException {
+    CompletableFuture<Registration> claimed = new CompletableFuture<>();
+    CompletableFuture<Registration> registered = files.putIfAbsent(key(size, crc), claimed);
+    if (registered == null) {
+      // the first of its content, which is written by the caller
+      return false;
+    }
+    Registration existing;
+    try {
+      existing = registered.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for " + target);
+    } catch (ExecutionException ex) {
+      return false;
+    }
+    if (existing == null || existing.file.equals(target) || !existing.isUnchanged(size)) {
+      return false;
+    }
+
+    try (InputStream in = content.open()) {
+      if (!Arrays.equals(existing.digest, DigestUtils.sha256(in))) {
+        return false;
+      }
+    }
+
+    try {
+      Files.deleteIfExists(target);
+      Files.createLink(target, existing.file);
+    } catch (IOException | UnsupportedOperationException ex) {
+      // ie. a file system without hard links
+      return false;
+    }
+    linkedFiles.incrementAndGet();
+    linkedBytes.addAndGet(size);
+    return true;
+  }
+
+  /**
+   * @return the number of files, which were linked
+   */
+  public int getLinkedFiles() {
+    return linkedFiles.get();
+  }
+
+  /**
+   * @return the number of bytes, which were not written due to links
+   */
+  public long getLinkedBytes() {
+    return linkedBytes.get();
+  }
+
+  private static String key(long size, long crc) {
+    return size + ":" + crc;
+  }
+
+  private static Object getFileKey(Path file) {
+    try {
+      return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * A registered file and the digest of its content.
+   */
+  private static class Registration {
+
+    private final Path file;
+
+    private final byte[] digest;
+
+    private final Object fileKey;
+
+    Registration(Path file, byte[] digest, Object fileKey) {
+      this.file = file;
+      this.digest = digest;
+      this.fileKey = fileKey;
+    }
+
+    /**
+     * @return true, if the file still has the registered content
+     */
+    boolean isUnchanged(long size) throws IOException {
+      if (!Files.isRegularFile(file) || Files.size(file) != size) {
+        return false;
+      }
+      if (fileKey != null) {
+        return Objects.equals(fileKey, getFileKey(file));
+      }
+      try (InputStream in = Files.newInputStream(file)) {
+        return Arrays.equals(digest, DigestUtils.sha256(in));
+      }
+    }
+  }
+
+  /**
+   * Opens the content of an entry.
+   */
+  @FunctionalInterface
+  public interface ContentSupplier {
+
+    InputStream open() throws IOException;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * DigestingEntity
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Entity wrapper, which computes message digests of the content while it is
+ * written to the connection. This avoids a separate pass over the content
+ * just for the checksums.
+ *
+ * <p>
+ * The digests are reset whenever the content is written again (ie. when a
+ * request is retried or repeated after an authentication challenge), so they
+ * always reflect the last transmission.</p>
+ *
+ * @author delker
+ */
+public class DigestingEntity extends HttpEntityWrapper {
+
+  private final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+
+  /**
+   * @param wrappedEntity the entity to compute the digests for
+   * @param algorithms names of the {@link MessageDigest} algorithms to compute
+   * @throws NoSuchAlgorithmException if an algorithm is not supported
+   */
+  public DigestingEntity(HttpEntity wrappedEntity, Iterable<String> algorithms)
+          throws NoSuchAlgorithmException {
+    super(wrappedEntity);
+    for (String algorithm : algorithms) {
+      digests.put(algorithm, MessageDigest.getInstance(algorithm));
+    }
+  }
+
+  @Override
+  public void writeTo(OutputStream outStream) throws IOException {
+    OutputStream out = outStream;
+    for (MessageDigest digest : digests.values()) {
+      digest.reset();
+      out = new DigestOutputStream(out, digest);
+    }
+    wrappedEntity.writeTo(out);
+    out.flush();
+  }
+
+  /**
+   * Completes the digests. Must be called only once, after the content has
+   * been written.
+   *
+   * @return the hex encoded digests of the last written content, keyed by
+   * algorithm
+   */
+  public Map<String, String> getDigests() {
+    Map<String, String> result = new LinkedHashMap<>();
+    for (Map.Entry<String, MessageDigest> entry : digests.entrySet()) {
+      result.put(entry.getKey(), Hex.encodeHexString(entry.getValue().digest()));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * FileSetWalker
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.apache.maven.shared.utils.io.DirectoryScanner;
+import org.apache.maven.shared.utils.io.MatchPatterns;
+
+/**
+ * Streaming alternative to
+ * {@link org.apache.maven.shared.model.fileset.util.FileSetManager#getIncludedFiles(FileSet)}.
+ *
+ * <p>
+ * The directory of the fileSet is scanned by a background thread, which hands
+ * matching files over to the iterating thread through a bounded queue. So the
+ * first files can be processed while the scan is still running, and memory
+ * is bounded by the queue size instead of the number of files.</p>
+ *
+ * <p>
+ * Includes, excludes, default excludes and symlink handling follow the
+ * semantics of the {@link DirectoryScanner} used by the FileSetManager.</p>
+ *
+ * @author delker
+ */
+public class FileSetWalker implements Iterable<File>, Closeable {
+
+  /**
+   * Marks the end of the scan in the queue.
+   */
+  private static final File END_OF_SCAN = new File("");
+
+  private final FileSet fileSet;
+
+  private final BlockingQueue<File> queue;
+
+  private final MatchPatterns includes;
+
+  private final MatchPatterns excludes;
+
+  private Thread scanner;
+
+  private volatile IOException failure;
+
+  private volatile long count;
+
+  /**
+   * @param fileSet the fileSet to scan
+   * @param queueSize the maximum number of matched files, which are buffered
+   * ahead of the iterating thread
+   */
+  public FileSetWalker(FileSet fileSet, int queueSize) {
+    this.fileSet = fileSet;
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+
+    List<String> includePatterns = fileSet.getIncludes();
+    this.includes = getPatterns(includePatterns.isEmpty() ? Collections.singletonList("**") : includePatterns);
+
+    List<String> excludePatterns = new ArrayList<>(fileSet.getExcludes());
+    if (fileSet.isUseDefaultExcludes()) {
+      Collections.addAll(excludePatterns, DirectoryScanner.DEFAULTEXCLUDES);
+    }
+    this.excludes = getPatterns(excludePatterns);
+  }
+
+  /**
+   * Starts the scan. A walker can only be iterated once.
+   *
+   * @return iterator over the matching files
+   * @throws UncheckedIOException from the iterator, if the scan failed or
+   * the iterating thread was interrupted; the interrupt flag is kept
+   */
+  @Override
+  public synchronized Iterator<File> iterator() {
+    if (scanner != null) {
+      throw new IllegalStateException("FileSetWalker can only be iterated once");
+    }
+    scanner = new Thread(this::scan, "fileset-walker");
+    scanner.setDaemon(true);
+    scanner.start();
+
+    return new Iterator<File>() {
+      private File next;
+
+      @Override
+      public boolean hasNext() {
+        if (next == null) {
+          try {
+            next = queue.take();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted");
+            interrupted.initCause(e);
+            throw new UncheckedIOException("Interrupted while scanning " + fileSet.getDirectory(), interrupted);
+          }
+        }
+        if (next == END_OF_SCAN) {
+          // keep the marker, so subsequent calls return false as well
+          if (failure != null) {
+            throw new UncheckedIOException("Failed to scan " + fileSet.getDirectory(), failure);
+          }
+          return false;
+        }
+        return true;
+      }
+
+      @Override
+      public File next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        File result = next;
+        next = null;
+        return result;
+      }
+    };
+  }
+
+  /**
+   * @return the number of matching files found so far
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Stops the scan, if it is still running.
+   */
+  @Override
+  public synchronized void close() {
+    if (scanner != null) {
+      scanner.interrupt();
+    }
+  }
+
+  private void scan() {
+    Path basedir = Paths.get(fileSet.getDirectory());
+    Set<FileVisitOption> options = fileSet.isFollowSymlinks()
+            ? EnumSet.of(FileVisitOption.FOLLOW_LINKS)
+            : EnumSet.noneOf(FileVisitOption.class);
+
+    try {
+      if (Files.isDirectory(basedir)) {
+        Files.walkFileTree(basedir, options, Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            if (dir.equals(basedir)) {
+              return FileVisitResult.CONTINUE;
+            }
+            if (attrs.isSymbolicLink()) {
+              return FileVisitResult.SKIP_SUBTREE;
+            }
+            // skip directories, which cannot hold any included files
+            String name = basedir.relativize(dir).toString();
+            return includes.matchesPatternStart(name, true)
+                    ? FileVisitResult.CONTINUE
+                    : FileVisitResult.SKIP_SUBTREE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            if (!attrs.isRegularFile()) {
+              return FileVisitResult.CONTINUE;
+            }
+            String name = basedir.relativize(file).toString();
+            if (includes.matches(name, true) && !excludes.matches(name, true)) {
+              try {
+                queue.put(file.toFile());
+                count++;
+              } catch (InterruptedException e) {
+                return FileVisitResult.TERMINATE;
+              }
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            // unreadable entries are skipped, as by the DirectoryScanner
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      }
+    } catch (IOException e) {
+      failure = e;
+    } finally {
+      try {
+        queue.put(END_OF_SCAN);
+      } catch (InterruptedException e) {
+        // closed, nobody is waiting for the end of the scan
+      }
+    }
+  }
+
+  /**
+   * Normalizes the patterns like the {@link DirectoryScanner} does.
+   */
+  private static MatchPatterns getPatterns(List<String> patterns) {
+    String[] normalized = new String[patterns.size()];
+    for (int i = 0; i < normalized.length; i++) {
+      String pattern = patterns.get(i).trim()
+              .replace('/', File.separatorChar)
+              .replace('\\', File.separatorChar);
+      if (pattern.endsWith(File.separator)) {
+        pattern += "**";
+      }
+      normalized[i] = pattern;
+    }
+    return MatchPatterns.from(normalized);
+  }
+}
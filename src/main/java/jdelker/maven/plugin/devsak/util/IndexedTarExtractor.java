@@ -0,0 +1,205 @@
+/*
+ * IndexedTarExtractor
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.codehaus.plexus.components.io.fileselectors.FileInfo;
+import org.codehaus.plexus.components.io.fileselectors.FileSelector;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Extracts selected entries of an uncompressed tar file through its
+ * {@link TarIndex}.
+ *
+ * <p>
+ * The entries are selected from the index and their data is copied directly
+ * from its offset in the archive, so the rest of the archive is not read. The
+ * result matches the plexus <code>TarUnArchiver</code>: existing files are
+ * overwritten, the modification time is set from the entry and permissions
+ * are ignored. If links, devices or sparse files are selected, the archive is
+ * not handled and must be extracted the regular way.</p>
+ *
+ * @author delker
+ */
+public class IndexedTarExtractor {
+
+  private final File sourceFile;
+
+  private final File destDirectory;
+
+  private final FileSelector selector;
+
+  private final File indexFile;
+
+  private int extractedEntries;
+
+  /**
+   * @param sourceFile the tar file to extract
+   * @param destDirectory the directory to extract to
+   * @param selector selects the entries to extract, or null for all
+   * @param indexFile the file to cache the index in, or null to always scan
+   * the archive
+   */
+  public IndexedTarExtractor(File sourceFile, File destDirectory, FileSelector selector, File indexFile) {
+    this.sourceFile = sourceFile;
+    this.destDirectory = destDirectory;
+    this.selector = selector;
+    this.indexFile = indexFile;
+  }
+
+  /**
+   * @return the number of entries, which were extracted
+   */
+  public int getExtractedEntries() {
+    return extractedEntries;
+  }
+
+  /**
+   * Lists the selected entries from the index. Only the headers are read, if
+   * the index must be built, and the index is cached for the extraction.
+   *
+   * @return the names of the selected entries, which are no directories
+   * @throws IOException if neither the archive nor the index could be read
+   */
+  public List<String> listEntries() throws IOException {
+    List<String> names = new ArrayList<>();
+    for (TarIndex.Entry entry : TarIndex.load(sourceFile, indexFile).getEntries()) {
+      if (!entry.isDirectory() && (selector == null || selector.isSelected(new EntryInfo(sourceFile, entry)))) {
+        names.add(entry.getName());
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Extracts the selected entries.
+   *
+   * @return false, if entries are selected, which are not supported here.
+   * Nothing has been extracted then.
+   * @throws IOException if the archive could not be read or an entry could
+   * not be written
+   */
+  public boolean extract() throws IOException {
+    TarIndex index = TarIndex.load(sourceFile, indexFile);
+
+    // the last entry of a name wins, as when extracting sequentially
+    Map<File, TarIndex.Entry> targets = new LinkedHashMap<>();
+    for (TarIndex.Entry entry : index.getEntries()) {
+      if (selector != null && !selector.isSelected(new EntryInfo(sourceFile, entry))) {
+        continue;
+      }
+      if (!entry.isFile() && !entry.isDirectory()) {
+        return false;
+      }
+      File target = getTarget(entry.getName());
+      targets.remove(target);
+      targets.put(target, entry);
+    }
+
+    try (FileChannel archive = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ)) {
+      for (Map.Entry<File, TarIndex.Entry> target : targets.entrySet()) {
+        extractEntry(archive, target.getValue(), target.getKey());
+      }
+    }
+    extractedEntries = targets.size();
+    return true;
+  }
+
+  private File getTarget(String entryName) throws IOException {
+    File target = FileUtils.resolveFile(destDirectory, entryName);
+    if (!target.getCanonicalFile().toPath().startsWith(destDirectory.getCanonicalFile().toPath())) {
+      throw new IOException("Entry is outside of the target directory (" + entryName + ")");
+    }
+    return target;
+  }
+
+  private static void extractEntry(FileChannel archive, TarIndex.Entry entry, File target) throws IOException {
+    if (entry.isDirectory()) {
+      target.mkdirs();
+    } else {
+      File parent = target.getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      // the target is replaced rather than truncated, so files linked to it keep their content
+      Files.deleteIfExists(target.toPath());
+      try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE_NEW,
+              StandardOpenOption.WRITE)) {
+        long position = entry.getOffset();
+        long end = position + entry.getSize();
+        while (position < end) {
+          long count = archive.transferTo(position, end - position, out);
+          if (count <= 0) {
+            throw new IOException("Unexpected end of archive in entry " + entry.getName());
+          }
+          position += count;
+        }
+      }
+    }
+    target.setLastModified(entry.getLastModified());
+  }
+
+  /**
+   * Presents an entry to the {@link FileSelector}.
+   */
+  private static class EntryInfo implements FileInfo {
+
+    private final File archive;
+
+    private final TarIndex.Entry entry;
+
+    EntryInfo(File archive, TarIndex.Entry entry) {
+      this.archive = archive;
+      this.entry = entry;
+    }
+
+    @Override
+    public String getName() {
+      return entry.getName();
+    }
+
+    @Override
+    public InputStream getContents() throws IOException {
+      return TarIndex.getInputStream(archive, entry);
+    }
+
+    @Override
+    public boolean isFile() {
+      return entry.isFile();
+    }
+
+    @Override
+    public boolean isDirectory() {
+      return entry.isDirectory();
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * ParallelXZInputStream
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import org.tukaani.xz.SeekableFileInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+/**
+ * Decompresses a multi-block xz file with several threads.
+ *
+ * <p>
+ * The blocks of an xz file are compressed independently, when it was created
+ * with multiple threads (<code>xz -T</code>) or an explicit block size. Their
+ * positions are listed in the index at the end of the file. Each worker seeks
+ * to a block through its own decoder and decompresses it into memory, while
+ * the blocks are returned in order. At most one block per thread is decoded
+ * ahead of the reader, so up to one block more than threads is held in
+ * memory. The number of threads is reduced to stay within a memory limit.</p>
+ *
+ * @author delker
+ */
+public class ParallelXZInputStream extends InputStream {
+
+  /**
+   * The default limit of the memory used for buffered blocks, 256 MiB.
+   */
+  public static final long DEFAULT_MEMORY_LIMIT = 256L * 1024 * 1024;
+
+  private final File file;
+
+  private final int blockCount;
+
+  private final long[] blockSizes;
+
+  private final ExecutorService executor;
+
+  private final BlockingQueue<SeekableXZInputStream> decoders = new LinkedBlockingQueue<>();
+
+  private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+  private int nextBlock;
+
+  private byte[] current = new byte[0];
+
+  private int position;
+
+  private boolean closed;
+
+  private ParallelXZInputStream(File file, SeekableXZInputStream first, int threads) {
+    this.file = file;
+    this.blockCount = first.getBlockCount();
+    this.blockSizes = new long[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      blockSizes[i] = first.getBlockSize(i);
+    }
+    this.decoders.add(first);
+    this.executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread thread = new Thread(r, "xz-decoder");
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (int i = 0; i < threads; i++) {
+      submitNext();
+    }
+  }
+
+  /**
+   * Opens an xz file for parallel decompression.
+   *
+   * @param file the xz file
+   * @param threads the maximum number of decoder threads
+   * @param memoryLimit the maximum number of bytes of the buffered blocks
+   * @return the decompressed stream, or null if the file has a single block
+   * only or less than two threads fit into the memory limit. It must be read
+   * sequentially then.
+   * @throws IOException if the file could not be read or is no xz file
+   */
+  public static ParallelXZInputStream open(File file, int threads, long memoryLimit) throws IOException {
+    SeekableXZInputStream first = new SeekableXZInputStream(new SeekableFileInputStream(file));
+    long largest = Math.max(1, first.getLargestBlockSize());
+    int usable = largest > Integer.MAX_VALUE - 8 ? 0 : (int) Math.min(threads, memoryLimit / largest - 1);
+    if (usable < 2 || first.getBlockCount() < 2) {
+      first.close();
+      return null;
+    }
+    return new ParallelXZInputStream(file, first, usable);
+  }
+
+  private void submitNext() {
+    if (nextBlock < blockCount) {
+      int block = nextBlock++;
+      pending.add(executor.submit(() -> decode(block)));
+    }
+  }
+
+  private byte[] decode(int block) throws IOException {
+    SeekableXZInputStream decoder = decoders.poll();
+    if (decoder == null) {
+      decoder = new SeekableXZInputStream(new SeekableFileInputStream(file));
+    }
+    try {
+      decoder.seekToBlock(block);
+      byte[] data = new byte[(int) blockSizes[block]];
+      IOUtils.readFully(decoder, data);
+      return data;
+    } finally {
+      decoders.add(decoder);
+    }
+  }
+
+  /**
+   * Makes the next block current, if the current one is exhausted.
+   *
+   * @return false at the end of the file
+   */
+  private boolean fill() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (position >= current.length) {
+      Future<byte[]> next = pending.poll();
+      if (next == null) {
+        return false;
+      }
+      try {
+        current = next.get();
+      } catch (ExecutionException ex) {
+        if (ex.getCause() instanceof IOException) {
+          throw (IOException) ex.getCause();
+        }
+        throw new IOException("Error while decompressing " + file.getAbsolutePath(), ex.getCause());
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while decompressing " + file.getAbsolutePath());
+      }
+      position = 0;
+      submitNext();
+    }
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!fill()) {
+      return -1;
+    }
+    return current[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+    int count = Math.min(len, current.length - position);
+    System.arraycopy(current, position, b, off, count);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return current.length - position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    executor.shutdownNow();
+    try {
+      // a block being decoded still holds its decoder
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    IOException failure = null;
+    for (SeekableXZInputStream decoder : decoders) {
+      try {
+        decoder.close();
+      } catch (IOException ex) {
+        failure = ex;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,402 @@
+/*
+ * ParallelZipExtractor
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.plexus.components.io.fileselectors.FileInfo;
+import org.codehaus.plexus.components.io.fileselectors.FileSelector;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Extracts the entries of a zip file concurrently.
+ *
+ * <p>
+ * The central directory is read once and matched against the
+ * {@link FileSelector}, so only the selected entries are read from the
+ * archive. These are then distributed to worker threads. Each worker reads
+ * the compressed data through positional reads on the shared file channel and
+ * inflates it with its own inflater, so the workers do not contend for the
+ * archive. Stored entries are copied with {@link FileChannel#transferTo}, and
+ * large deflated entries are inflated directly from memory-mapped regions of
+ * the archive. Entries, which may be linked by a {@link ContentLinker}, are
+ * read through a stream instead, to compute their digest.</p>
+ *
+ * <p>
+ * The result matches the plexus <code>ZipUnArchiver</code>: entries are
+ * selected through the same {@link FileSelector}, existing files are
+ * overwritten, the modification time is set from the entry and permissions
+ * are ignored. If symbolic links or entries, which cannot be read (ie.
+ * encrypted ones), are selected, the archive is not handled and must be
+ * extracted the regular way.</p>
+ *
+ * @author delker
+ */
+public class ParallelZipExtractor {
+
+  /**
+   * The encoding of entry names used by the plexus ZipUnArchiver.
+   */
+  private static final String ENCODING = "UTF8";
+
+  /**
+   * Deflated entries of at least this size are inflated from a memory-mapped
+   * region. For smaller ones, setting up the mapping costs more than it saves.
+   */
+  private static final long MAP_THRESHOLD = 1024 * 1024;
+
+  /**
+   * The size of the regions mapped at once.
+   */
+  private static final long MAP_REGION_SIZE = 64 * 1024 * 1024;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File sourceFile;
+
+  private final File destDirectory;
+
+  private final FileSelector selector;
+
+  private final int threads;
+
+  private boolean skipUpToDate;
+
+  private final AtomicInteger skippedEntries = new AtomicInteger();
+
+  private ContentLinker linker;
+
+  /**
+   * @param sourceFile the zip file to extract
+   * @param destDirectory the directory to extract to
+   * @param selector selects the entries to extract, or null for all
+   * @param threads the number of worker threads
+   */
+  public ParallelZipExtractor(File sourceFile, File destDirectory, FileSelector selector, int threads) {
+    this.sourceFile = sourceFile;
+    this.destDirectory = destDirectory;
+    this.selector = selector;
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * @param skipUpToDate if true, files on disk with the size and CRC of their
+   * entry are not written again
+   */
+  public void setSkipUpToDate(boolean skipUpToDate) {
+    this.skipUpToDate = skipUpToDate;
+  }
+
+  /**
+   * @param linker links entries to files with identical content, which were
+   * extracted before, or null to always write the entries
+   */
+  public void setLinker(ContentLinker linker) {
+    this.linker = linker;
+  }
+
+  /**
+   * @return the number of entries, which were skipped as up to date
+   */
+  public int getSkippedEntries() {
+    return skippedEntries.get();
+  }
+
+  /**
+   * Lists the selected entries from the central directory, without reading
+   * any entry data.
+   *
+   * @return the names of the selected entries, which are no directories
+   * @throws IOException if the archive could not be read
+   */
+  public List<String> listEntries() throws IOException {
+    List<String> names = new ArrayList<>();
+    try (ZipFile zipFile = new ZipFile(sourceFile, ENCODING, true)) {
+      for (Enumeration<ZipArchiveEntry> en = zipFile.getEntries(); en.hasMoreElements();) {
+        ZipArchiveEntry entry = en.nextElement();
+        if (!entry.isDirectory() && (selector == null || selector.isSelected(new EntryInfo(zipFile, entry)))) {
+          names.add(entry.getName());
+        }
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Extracts the selected entries.
+   *
+   * @return false, if the archive contains entries, which are not supported
+   * here. Nothing has been extracted then.
+   * @throws IOException if the archive could not be read or an entry could
+   * not be written
+   */
+  public boolean extract() throws IOException {
+    try (ZipFile zipFile = new ZipFile(sourceFile, ENCODING, true);
+            FileChannel archive = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ)) {
+      // the last entry of a name wins, as when extracting sequentially
+      Map<File, ZipArchiveEntry> targets = new LinkedHashMap<>();
+      for (Enumeration<ZipArchiveEntry> en = zipFile.getEntriesInPhysicalOrder(); en.hasMoreElements();) {
+        ZipArchiveEntry entry = en.nextElement();
+        if (selector != null && !selector.isSelected(new EntryInfo(zipFile, entry))) {
+          continue;
+        }
+        if (entry.isUnixSymlink() || !zipFile.canReadEntryData(entry)) {
+          return false;
+        }
+        File target = getTarget(entry.getName());
+        targets.remove(target);
+        targets.put(target, entry);
+      }
+      for (ZipArchiveEntry entry : targets.values()) {
+        resolveDataOffset(zipFile, entry);
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, targets.size())));
+      try {
+        List<Future<?>> futures = new ArrayList<>(targets.size());
+        for (Map.Entry<File, ZipArchiveEntry> target : targets.entrySet()) {
+          futures.add(executor.submit(() -> {
+            extractEntry(zipFile, archive, target.getValue(), target.getKey());
+            return null;
+          }));
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (ExecutionException ex) {
+        if (ex.getCause() instanceof IOException) {
+          throw (IOException) ex.getCause();
+        }
+        throw new IOException("Error while expanding " + sourceFile.getAbsolutePath(), ex.getCause());
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while expanding " + sourceFile.getAbsolutePath());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Locates the data of an entry through its local file header. The lookup
+   * moves the position of the shared channel, so it must not run concurrently.
+   * Only the headers of the selected entries are read this way.
+   */
+  private static void resolveDataOffset(ZipFile zipFile, ZipArchiveEntry entry) throws IOException {
+    // opening the stream resolves the offset, its content is not needed
+    InputStream raw = zipFile.getRawInputStream(entry);
+    if (raw != null) {
+      raw.close();
+    }
+  }
+
+  private File getTarget(String entryName) throws IOException {
+    File target = FileUtils.resolveFile(destDirectory, entryName);
+    if (!target.getCanonicalFile().toPath().startsWith(destDirectory.getCanonicalFile().toPath())) {
+      throw new IOException("Entry is outside of the target directory (" + entryName + ")");
+    }
+    return target;
+  }
+
+  private void extractEntry(ZipFile zipFile, FileChannel archive, ZipArchiveEntry entry, File target)
+          throws IOException {
+    if (entry.isDirectory()) {
+      target.mkdirs();
+    } else if (skipUpToDate && isUpToDate(entry, target)) {
+      skippedEntries.incrementAndGet();
+    } else {
+      File parent = target.getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      boolean linkable = linker != null && entry.getSize() >= 0 && entry.getCrc() >= 0;
+      if (!linkable || !linker.link(entry.getSize(), entry.getCrc(), () -> zipFile.getInputStream(entry), target.toPath())) {
+        writeEntry(zipFile, archive, entry, target, linkable);
+      }
+    }
+    // linked files share the modification time of the entry extracted last
+    target.setLastModified(entry.getTime());
+  }
+
+  private void writeEntry(ZipFile zipFile, FileChannel archive, ZipArchiveEntry entry, File target, boolean linkable)
+          throws IOException {
+    byte[] digest = null;
+    try {
+      // the target is replaced rather than truncated, so files linked to it keep their content
+      Files.deleteIfExists(target.toPath());
+      if (linkable) {
+        // the digest is kept to compare later entries of the same size and CRC
+        MessageDigest sha256 = DigestUtils.getSha256Digest();
+        try (InputStream in = new DigestInputStream(zipFile.getInputStream(entry), sha256)) {
+          Files.copy(in, target.toPath());
+        }
+        digest = sha256.digest();
+      } else if (entry.getMethod() == ZipEntry.STORED) {
+        transferStored(archive, entry, target);
+      } else if (entry.getMethod() == ZipEntry.DEFLATED && entry.getCompressedSize() >= MAP_THRESHOLD) {
+        inflateMapped(archive, entry, target);
+      } else {
+        try (InputStream in = zipFile.getInputStream(entry)) {
+          Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+    } finally {
+      if (linkable) {
+        // releases entries with the same content, which wait for this one
+        linker.register(entry.getSize(), entry.getCrc(), digest != null ? target.toPath() : null, digest);
+      }
+    }
+  }
+
+  /**
+   * Copies the data of a stored entry from the archive to the target file.
+   * The data is not passed through the heap, the kernel copies it directly
+   * where supported.
+   */
+  private static void transferStored(FileChannel archive, ZipArchiveEntry entry, File target) throws IOException {
+    try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE)) {
+      long position = entry.getDataOffset();
+      long end = position + entry.getCompressedSize();
+      while (position < end) {
+        long count = archive.transferTo(position, end - position, out);
+        if (count <= 0) {
+          throw new IOException("Truncated zip entry " + entry.getName());
+        }
+        position += count;
+      }
+    }
+  }
+
+  /**
+   * Inflates a large entry directly from a memory-mapped region of the
+   * archive, so the compressed data is neither copied to the heap nor read
+   * through a stream.
+   */
+  private static void inflateMapped(FileChannel archive, ZipArchiveEntry entry, File target) throws IOException {
+    Inflater inflater = new Inflater(true);
+    try (OutputStream out = Files.newOutputStream(target.toPath())) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long position = entry.getDataOffset();
+      long end = position + entry.getCompressedSize();
+      boolean padded = false;
+      while (!inflater.finished()) {
+        if (inflater.needsInput()) {
+          if (position < end) {
+            long size = Math.min(end - position, MAP_REGION_SIZE);
+            inflater.setInput(archive.map(FileChannel.MapMode.READ_ONLY, position, size));
+            position += size;
+          } else if (!padded) {
+            // the raw deflate stream may need an extra byte to signal its end
+            inflater.setInput(new byte[1]);
+            padded = true;
+          } else {
+            throw new IOException("Truncated zip entry " + entry.getName());
+          }
+        }
+        int count = inflater.inflate(buffer);
+        out.write(buffer, 0, count);
+      }
+    } catch (DataFormatException ex) {
+      throw new ZipException("Invalid data in zip entry " + entry.getName() + ": " + ex.getMessage());
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static boolean isUpToDate(ZipArchiveEntry entry, File target) throws IOException {
+    if (!target.isFile() || entry.getSize() < 0 || entry.getCrc() < 0 || target.length() != entry.getSize()) {
+      return false;
+    }
+    CRC32 crc = new CRC32();
+    try (InputStream in = new CheckedInputStream(Files.newInputStream(target.toPath()), crc)) {
+      IOUtils.consume(in);
+    }
+    return crc.getValue() == entry.getCrc();
+  }
+
+  /**
+   * Presents an entry to the {@link FileSelector}.
+   */
+  private static class EntryInfo implements FileInfo {
+
+    private final ZipFile zipFile;
+
+    private final ZipArchiveEntry entry;
+
+    EntryInfo(ZipFile zipFile, ZipArchiveEntry entry) {
+      this.zipFile = zipFile;
+      this.entry = entry;
+    }
+
+    @Override
+    public String getName() {
+      return entry.getName();
+    }
+
+    @Override
+    public InputStream getContents() throws IOException {
+      return zipFile.getInputStream(entry);
+    }
+
+    @Override
+    public boolean isFile() {
+      return !entry.isDirectory() && !entry.isUnixSymlink();
+    }
+
+    @Override
+    public boolean isDirectory() {
+      return entry.isDirectory();
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+      return entry.isUnixSymlink();
+    }
+  }
+}
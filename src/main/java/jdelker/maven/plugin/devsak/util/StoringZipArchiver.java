@@ -0,0 +1,80 @@
+/*
+ * StoringZipArchiver
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.IOException;
+import java.util.Locale;
+import org.codehaus.plexus.archiver.ArchiveEntry;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.zip.ConcurrentJarCreator;
+import org.codehaus.plexus.archiver.zip.ZipArchiver;
+
+/**
+ * A plexus {@link ZipArchiver}, which stores files of given types without
+ * compression. Deflating already compressed content (ie. nested archives or
+ * media files) costs CPU time, but hardly saves any space.
+ *
+ * <p>
+ * The entries are compressed concurrently by the plexus
+ * {@link ConcurrentJarCreator}, using all available processors.</p>
+ *
+ * @author delker
+ */
+public class StoringZipArchiver extends ZipArchiver {
+
+  private String[] storedTypes = new String[0];
+
+  /**
+   * @param storedTypes file name patterns (ie. <code>*.jar</code>) of the
+   * files to store without compression
+   */
+  public void setStoredTypes(String[] storedTypes) {
+    this.storedTypes = storedTypes != null ? storedTypes : new String[0];
+  }
+
+  @Override
+  protected void zipFile(ArchiveEntry entry, ConcurrentJarCreator zOut, String vPath)
+          throws IOException, ArchiverException {
+    if (!isCompress() || !isStored(vPath)) {
+      super.zipFile(entry, zOut, vPath);
+      return;
+    }
+    // entries are added one after the other, only their compression runs concurrently
+    setCompress(false);
+    try {
+      super.zipFile(entry, zOut, vPath);
+    } finally {
+      setCompress(true);
+    }
+  }
+
+  /**
+   * @param name the path of the entry
+   * @return true, if the entry matches any of the <i>storedTypes</i>
+   */
+  protected boolean isStored(String name) {
+    String lowerName = name.toLowerCase(Locale.ROOT);
+    for (String type : storedTypes) {
+      String pattern = type.trim().toLowerCase(Locale.ROOT);
+      if (pattern.startsWith("*.") && lowerName.endsWith(pattern.substring(1))) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * TarIndex
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.utils.BoundedInputStream;
+
+/**
+ * The offsets of the entries of an uncompressed tar file.
+ *
+ * <p>
+ * A tar file has no central directory, so the headers of all entries must be
+ * read to find a particular one. The scan skips the entry data, but still
+ * touches every header of the archive. The resulting index can be stored, so
+ * later extractions seek directly to the selected entries. A stored index is
+ * only used, while the size and modification time of the archive match.</p>
+ *
+ * @author delker
+ */
+public class TarIndex {
+
+  private static final int VERSION = 2;
+
+  private final List<Entry> entries;
+
+  private TarIndex(List<Entry> entries) {
+    this.entries = Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * @return the entries in the order of the archive
+   */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Returns the index of a tar file, from the index file if it is still
+   * valid. Otherwise the archive is scanned and the index file is written.
+   *
+   * @param archive the tar file
+   * @param indexFile the file to cache the index in, or null to always scan
+   * @return the index
+   * @throws IOException if neither the archive nor the index could be read
+   */
+  public static TarIndex load(File archive, File indexFile) throws IOException {
+    if (indexFile != null && indexFile.isFile()) {
+      TarIndex index = read(archive, indexFile);
+      if (index != null) {
+        return index;
+      }
+    }
+    TarIndex index = scan(archive);
+    if (indexFile != null) {
+      index.write(archive, indexFile);
+    }
+    return index;
+  }
+
+  /**
+   * Reads the headers of all entries of a tar file.
+   *
+   * @param archive the tar file
+   * @return the index
+   * @throws IOException if the archive could not be read
+   */
+  public static TarIndex scan(File archive) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    // the entry data is skipped on the file stream, which seeks instead of reading
+    try (TarArchiveInputStream in = new TarArchiveInputStream(Files.newInputStream(archive.toPath()))) {
+      TarArchiveEntry entry;
+      while ((entry = in.getNextTarEntry()) != null) {
+        char type = entry.isDirectory() ? Entry.DIRECTORY
+                : entry.isFile() && !entry.isSparse() ? Entry.FILE : Entry.OTHER;
+        entries.add(new Entry(entry.getName(), type, in.getBytesRead(), entry.getSize(),
+                entry.getModTime().getTime()));
+      }
+    }
+    return new TarIndex(entries);
+  }
+
+  private static TarIndex read(File archive, File indexFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+      if (in.readInt() != VERSION || in.readLong() != archive.length() || in.readLong() != archive.lastModified()) {
+        return null;
+      }
+      int count = in.readInt();
+      List<Entry> entries = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        entries.add(new Entry(readString(in), in.readChar(), in.readLong(), in.readLong(), in.readLong()));
+      }
+      return new TarIndex(entries);
+    }
+  }
+
+  private void write(File archive, File indexFile) throws IOException {
+    File parent = indexFile.getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile.toPath())))) {
+      out.writeInt(VERSION);
+      out.writeLong(archive.length());
+      out.writeLong(archive.lastModified());
+      out.writeInt(entries.size());
+      for (Entry entry : entries) {
+        writeString(out, entry.name);
+        out.writeChar(entry.type);
+        out.writeLong(entry.offset);
+        out.writeLong(entry.size);
+        out.writeLong(entry.lastModified);
+      }
+    }
+  }
+
+  /**
+   * Writes a string as length-prefixed UTF-8, as entry names may exceed the
+   * 64 KiB limit of {@link DataOutputStream#writeUTF(String)}.
+   */
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * An entry of the index.
+   */
+  public static class Entry {
+
+    static final char FILE = 'f';
+
+    static final char DIRECTORY = 'd';
+
+    /**
+     * Links, devices and sparse files, whose data cannot be copied as is.
+     */
+    static final char OTHER = 'o';
+
+    private final String name;
+
+    private final char type;
+
+    private final long offset;
+
+    private final long size;
+
+    private final long lastModified;
+
+    Entry(String name, char type, long offset, long size, long lastModified) {
+      this.name = name;
+      this.type = type;
+      this.offset = offset;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public boolean isFile() {
+      return type == FILE;
+    }
+
+    public boolean isDirectory() {
+      return type == DIRECTORY;
+    }
+
+    /**
+     * @return the position of the entry data within the archive
+     */
+    public long getOffset() {
+      return offset;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+  }
+
+  /**
+   * Opens the data of an entry.
+   *
+   * @param archive the tar file
+   * @param entry the entry of this index
+   * @return the stream of the entry data
+   * @throws IOException if the archive could not be read
+   */
+  static InputStream getInputStream(File archive, Entry entry) throws IOException {
+    SeekableByteChannel channel = Files.newByteChannel(archive.toPath());
+    try {
+      channel.position(entry.offset);
+    } catch (IOException ex) {
+      channel.close();
+      throw ex;
+    }
+    // the bounded stream does not close the stream it wraps
+    return new FilterInputStream(new BoundedInputStream(Channels.newInputStream(channel), entry.size)) {
+      @Override
+      public void close() throws IOException {
+        channel.close();
+      }
+    };
+  }
+}
@@ -0,0 +1,353 @@
+/*
+ * TransferProgress
+ *
+ * Copyright (c) 2023 Joerg Delker
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jdelker.maven.plugin.devsak.util;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Reports the progress of concurrent transfers.
+ *
+ * <p>
+ * While transfers are running, the bytes transferred, the current and average
+ * throughput and the estimated remaining time are logged in a fixed interval,
+ * for each active transfer and in aggregate. A stalled transfer thus shows up
+ * with a current throughput of zero. When all transfers are done,
+ * {@link #summary()} logs the totals and the per-transfer latencies.</p>
+ *
+ * @author delker
+ */
+public class TransferProgress implements Closeable {
+
+  private final Log log;
+
+  private final String verb;
+
+  private final long startTime = System.nanoTime();
+
+  private final AtomicLong totalBytes = new AtomicLong();
+
+  private final AtomicLong completed = new AtomicLong();
+
+  private final AtomicLong unknownSizes = new AtomicLong();
+
+  private final Set<Transfer> active = ConcurrentHashMap.newKeySet();
+
+  private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+
+  private volatile long expectedBytes = -1;
+
+  private volatile boolean liveBytes = true;
+
+  private long lastReportTime = startTime;
+
+  private long lastReportBytes;
+
+  private ScheduledExecutorService ticker;
+
+  /**
+   * @param log the log to report to
+   * @param verb describes the transfers in messages, ie. "Uploaded"
+   * @param interval interval in milliseconds between progress reports, or 0
+   * to log the summary only
+   */
+  public TransferProgress(Log log, String verb, long interval) {
+    this.log = log;
+    this.verb = verb;
+    if (interval > 0) {
+      ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "transfer-progress");
+        thread.setDaemon(true);
+        return thread;
+      });
+      ticker.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Sets the total number of bytes to transfer, if known upfront. This
+   * enables the overall estimate of the remaining time.
+   *
+   * @param bytes the total number of bytes
+   */
+  public void setExpectedBytes(long bytes) {
+    this.expectedBytes = bytes;
+  }
+
+  /**
+   * Declares, whether the bytes of running transfers are reported through
+   * {@link Transfer#update(long)} while they run (the default), or only when
+   * they are completed. In the latter case, the periodic reports show the
+   * completed transfers and the time each active transfer is running.
+   *
+   * @param liveBytes false, if bytes are only known at the end of a transfer
+   */
+  public void setLiveBytes(boolean liveBytes) {
+    this.liveBytes = liveBytes;
+  }
+
+  /**
+   * Starts tracking a transfer.
+   *
+   * @param name the name of the transfer, used in messages
+   * @param size the size in bytes, or -1 if unknown
+   * @return the transfer to report the transferred bytes to
+   */
+  public Transfer start(String name, long size) {
+    Transfer transfer = new Transfer(name, size);
+    active.add(transfer);
+    return transfer;
+  }
+
+  /**
+   * Stops the periodic reports.
+   */
+  @Override
+  public void close() {
+    if (ticker != null) {
+      ticker.shutdownNow();
+    }
+  }
+
+  /**
+   * Logs the totals of all completed transfers.
+   */
+  public void summary() {
+    long elapsed = System.nanoTime() - startTime;
+    long bytes = totalBytes.get();
+    StringBuilder message = new StringBuilder()
+            .append(verb).append(' ').append(completed.get()).append(" file(s), ")
+            .append(formatBytes(bytes));
+    if (unknownSizes.get() > 0) {
+      message.append(" (").append(unknownSizes.get()).append(" of unknown size)");
+    }
+    message.append(" in ").append(formatDuration(elapsed))
+            .append(" (").append(formatRate(bytes, elapsed)).append(")");
+
+    List<Long> sorted;
+    synchronized (latencies) {
+      sorted = new ArrayList<>(latencies);
+    }
+    if (!sorted.isEmpty()) {
+      Collections.sort(sorted);
+      message.append(", latency p50 ").append(TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 50))).append(" ms")
+              .append(", p95 ").append(TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 95))).append(" ms");
+    }
+    log.info(message.toString());
+  }
+
+  /**
+   * Logs the current progress. Called periodically by the ticker.
+   */
+  synchronized void report() {
+    long now = System.nanoTime();
+    long bytes = totalBytes.get();
+    long elapsed = now - startTime;
+
+    if (!liveBytes) {
+      log.info(verb + ' ' + completed.get() + " file(s), " + formatBytes(bytes)
+              + " in " + formatDuration(elapsed) + " (" + active.size() + " active)");
+      for (Transfer transfer : active) {
+        transfer.reportRunning(now);
+      }
+      return;
+    }
+
+    StringBuilder message = new StringBuilder()
+            .append(verb).append(' ').append(formatBytes(bytes));
+    long expected = expectedBytes;
+    if (expected > 0) {
+      message.append(" of ").append(formatBytes(expected));
+    }
+    message.append(", ").append(formatRate(bytes - lastReportBytes, now - lastReportTime)).append(" current")
+            .append(", ").append(formatRate(bytes, elapsed)).append(" average");
+    if (expected > 0 && bytes > 0) {
+      message.append(", ETA ").append(formatDuration(estimate(expected - bytes, bytes, elapsed)));
+    }
+    message.append(" (").append(completed.get()).append(" done, ").append(active.size()).append(" active)");
+    log.info(message.toString());
+
+    for (Transfer transfer : active) {
+      transfer.report(now);
+    }
+
+    lastReportTime = now;
+    lastReportBytes = bytes;
+  }
+
+  /**
+   * A single transfer tracked by the {@link TransferProgress}.
+   */
+  public class Transfer {
+
+    private final String name;
+
+    private final long size;
+
+    private final long startTime = System.nanoTime();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private long lastReportTime = startTime;
+
+    private long lastReportBytes;
+
+    private Transfer(String name, long size) {
+      this.name = name;
+      this.size = size;
+    }
+
+    /**
+     * Adds transferred bytes.
+     *
+     * @param count the number of bytes
+     */
+    public void update(long count) {
+      bytes.addAndGet(count);
+      totalBytes.addAndGet(count);
+    }
+
+    /**
+     * Wraps a stream, so the bytes written to it are counted. The count is
+     * restarted on every call, so a repeated transmission (ie. a retry) is
+     * not counted twice.
+     *
+     * @param out the stream to count
+     * @return the counting stream
+     */
+    public OutputStream wrap(OutputStream out) {
+      totalBytes.addAndGet(-bytes.getAndSet(0));
+      return new FilterOutputStream(out) {
+        @Override
+        public void write(int b) throws IOException {
+          out.write(b);
+          update(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          out.write(b, off, len);
+          update(len);
+        }
+      };
+    }
+
+    /**
+     * Declares, that the bytes of the transfer cannot be determined. It is
+     * counted separately in the summary.
+     */
+    public void sizeUnknown() {
+      unknownSizes.incrementAndGet();
+    }
+
+    /**
+     * Completes the transfer.
+     */
+    public void done() {
+      if (active.remove(this)) {
+        completed.incrementAndGet();
+        latencies.add(System.nanoTime() - startTime);
+      }
+    }
+
+    /**
+     * Stops tracking a failed transfer.
+     */
+    public void failed() {
+      active.remove(this);
+    }
+
+    private void report(long now) {
+      long current = bytes.get();
+      long elapsed = now - startTime;
+      StringBuilder message = new StringBuilder("  ").append(name).append(": ").append(formatBytes(current));
+      if (size > 0) {
+        message.append(" of ").append(formatBytes(size))
+                .append(" (").append(current * 100 / size).append("%)");
+      }
+      message.append(", ").append(formatRate(current - lastReportBytes, now - lastReportTime)).append(" current")
+              .append(", ").append(formatRate(current, elapsed)).append(" average");
+      if (size > 0 && current > 0) {
+        message.append(", ETA ").append(formatDuration(estimate(size - current, current, elapsed)));
+      }
+      log.info(message.toString());
+
+      lastReportTime = now;
+      lastReportBytes = current;
+    }
+
+    private void reportRunning(long now) {
+      log.info("  " + name + ": running for " + formatDuration(now - startTime)
+              + (size > 0 ? " (" + formatBytes(size) + ")" : ""));
+    }
+  }
+
+  private static long estimate(long remaining, long done, long elapsed) {
+    return Math.max(0, (long) ((double) remaining / done * elapsed));
+  }
+
+  private static long percentile(List<Long> sorted, int percentile) {
+    int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+    return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+  }
+
+  static String formatBytes(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    String units = "KMGTPE";
+    double value = bytes;
+    int unit = -1;
+    while (value >= 1024 && unit < units.length() - 1) {
+      value /= 1024;
+      unit++;
+    }
+    return String.format(Locale.ROOT, "%.1f %siB", value, units.charAt(unit));
+  }
+
+  static String formatRate(long bytes, long nanos) {
+    if (nanos <= 0) {
+      return "0 B/s";
+    }
+    return formatBytes((long) (bytes * 1e9 / nanos)) + "/s";
+  }
+
+  static String formatDuration(long nanos) {
+    long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+    if (seconds < 60) {
+      return TimeUnit.NANOSECONDS.toMillis(nanos) / 1000.0 + " s";
+    }
+    if (seconds < 3600) {
+      return seconds / 60 + "m " + seconds % 60 + "s";
+    }
+    return seconds / 3600 + "h " + seconds / 60 % 60 + "m";
+  }
+}
@@ -25,14 +25,19 @@ import java.nio.file.Path;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.mockserver.client.MockServerClient;
 import org.mockserver.client.initialize.PluginExpectationInitializer;
+import org.mockserver.model.ConnectionOptions;
 import org.mockserver.model.HttpStatusCode;
 import org.mockserver.model.MediaType;
+import org.mockserver.matchers.Times;
 import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
 import static org.mockserver.model.NottableString.not;
 import static org.mockserver.model.NottableString.string;
+import static org.mockserver.model.RegexBody.regex;
+import static org.mockserver.model.StringBody.subString;
 import static org.mockserver.model.Header.header;
 
 
@@ -46,6 +51,7 @@ public class MockServerInitializer implements PluginExpectationInitializer {
   
   private final static String FILE_TXT = "file1.txt";
   private final static String FILE_ZIP = "file2.zip";
+  private final static String FILE_TAR_ZST = "file3.tar.zst";
   
 
   private final Map<String,byte[]> fileContentMap = new HashMap<>();
@@ -53,6 +59,7 @@ public class MockServerInitializer implements PluginExpectationInitializer {
   public MockServerInitializer() throws IOException {
     fileContentMap.put(FILE_TXT, Files.readAllBytes(Path.of(FILES_DIRECTORY,FILE_TXT)));
     fileContentMap.put(FILE_ZIP, Files.readAllBytes(Path.of(FILES_DIRECTORY,FILE_ZIP)));
+    fileContentMap.put(FILE_TAR_ZST, Files.readAllBytes(Path.of(FILES_DIRECTORY,FILE_TAR_ZST)));
   }
 
   
@@ -74,6 +81,7 @@ public class MockServerInitializer implements PluginExpectationInitializer {
             .respond(
                     response()
                             .withStatusCode(HttpStatusCode.UNAUTHORIZED_401.code())
+                            .withHeader("WWW-Authenticate", "Basic realm=\"it\"")
             );
 
     // GET TXT file
@@ -102,6 +110,36 @@ public class MockServerInitializer implements PluginExpectationInitializer {
                             .withStatusCode(HttpStatusCode.OK_200.code())
             );
 
+    // GET TAR.ZST file
+    client.when(
+            request()
+                    .withMethod("GET")
+                    .withPath("/it-get-file/file3.tar.zst")
+    )
+            .respond(
+                    response()
+                            .withContentType(MediaType.APPLICATION_BINARY)
+                            .withBody(fileContentMap.get(FILE_TAR_ZST))
+                            .withStatusCode(HttpStatusCode.OK_200.code())
+            );
+
+    // HEAD file (size probe)
+    for (Map.Entry<String, byte[]> entry : fileContentMap.entrySet()) {
+      client.when(
+              request()
+                      .withMethod("HEAD")
+                      .withPath("/it-get-file/" + entry.getKey())
+      )
+              .respond(
+                      response()
+                              .withConnectionOptions(
+                                      ConnectionOptions.connectionOptions()
+                                              .withContentLengthHeaderOverride(entry.getValue().length)
+                              )
+                              .withStatusCode(HttpStatusCode.OK_200.code())
+              );
+    }
+
     // Single file PUT
     client.when(
             request()
@@ -113,6 +151,38 @@ public class MockServerInitializer implements PluginExpectationInitializer {
                             .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
             );
 
+    // Single file PUT, which fails transiently before it succeeds
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-put-retry/file1.txt"),
+            Times.once()
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.SERVICE_UNAVAILABLE_503.code())
+            );
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-put-retry/file1.txt"),
+            Times.once()
+    )
+            .respond(
+                    response()
+                            .withStatusCode(429)
+                            .withHeader("Retry-After", "1")
+            );
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-put-retry/file1.txt")
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
+            );
+
     // Single file POST
     client.when(
             request()
@@ -124,6 +194,76 @@ public class MockServerInitializer implements PluginExpectationInitializer {
                             .withStatusCode(HttpStatusCode.CREATED_201.code())
             );
 
+    // Single file PUT with checksum sidecars, which must match the content
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-put-checksums/file1.txt")
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
+            );
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-put-checksums/file1.txt.sha1")
+                    .withBody(DigestUtils.sha1Hex(fileContentMap.get(FILE_TXT)))
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
+            );
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-put-checksums/file1.txt.sha256")
+                    .withBody(DigestUtils.sha256Hex(fileContentMap.get(FILE_TXT)))
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
+            );
+
+    // Checksum deploy of known content
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-checksum-deploy/.*")
+                    .withHeaders(
+                            header("X-Checksum-Deploy", "true"),
+                            header("X-Checksum-Sha1", DigestUtils.sha1Hex(fileContentMap.get(FILE_TXT)))
+                    )
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.CREATED_201.code())
+            );
+
+    // Checksum deploy of unknown content
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-checksum-deploy/.*")
+                    .withHeader("X-Checksum-Deploy", "true")
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.NOT_FOUND_404.code())
+            );
+
+    // Content upload after unsuccessful checksum deploy
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-checksum-deploy/.*")
+                    .withHeader("X-Checksum-Sha1")
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.CREATED_201.code())
+            );
+
     // Multiple files PUT
     client.when(
             request()
@@ -135,6 +275,132 @@ public class MockServerInitializer implements PluginExpectationInitializer {
                             .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
             );
 
+    // Directory tree PUT, only the expected relative paths are accepted
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-put-tree/(file1|dir1/file3|dir1/file4)\\.txt")
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
+            );
+
+    // Mirrored dependency, which the server has already
+    client.when(
+            request()
+                    .withMethod("HEAD")
+                    .withPath("/it-mirror/org/apache/maven/maven-model/3.6.3/maven-model-3.6.3.jar")
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.OK_200.code())
+            );
+
+    // Mirrored dependencies PUT, only the expected repository paths are accepted
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-mirror/org/apache/maven/(maven-plugin-api|maven-artifact)/3\\.6\\.3/"
+                            + "(maven-plugin-api|maven-artifact)-3\\.6\\.3\\.jar")
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.CREATED_201.code())
+            );
+
+    // Mirrored dependencies in a batch, the server has maven-model already
+    client.when(
+            request()
+                    .withMethod("HEAD")
+                    .withPath("/it-mirror-batch/org/apache/maven/maven-model/3.6.3/maven-model-3.6.3.jar")
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.OK_200.code())
+            );
+    client.when(
+            request()
+                    .withMethod("POST")
+                    .withPath("/it-mirror-batch")
+                    .withHeader(header("Content-Type", "multipart/form-data; boundary=.*"))
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
+            );
+
+    // Large error response, as sent by a misbehaving proxy
+    StringBuilder errorPage = new StringBuilder("<html><body>");
+    for (int i = 0; i < 20000; i++) {
+      errorPage.append("Bad Gateway ");
+    }
+    errorPage.append("</body></html>");
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-put-error/file1.txt")
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.BAD_GATEWAY_502.code())
+                            .withHeader("Content-Type", "text/html")
+                            .withBody(errorPage.toString())
+            );
+
+    // Compressed upload
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-put-gzip/file1.txt")
+                    .withHeader(header("Content-Encoding", "gzip"))
+                    .withHeader(header("Content-Type", "text/plain.*"))
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
+            );
+
+    // Batch as multipart POST, with the relative paths as file names
+    client.when(
+            request()
+                    .withMethod("POST")
+                    .withPath("/it-post-batch")
+                    .withHeader(header("Content-Type", "multipart/form-data; boundary=.*"))
+                    .withBody(subString("filename=\"dir1/file3.txt\""))
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
+            );
+
+    // Batch as Nexus raw components, with the file names and directory as text fields
+    client.when(
+            request()
+                    .withMethod("POST")
+                    .withPath("/it-post-raw")
+                    .withHeader(header("Content-Type", "multipart/form-data; boundary=.*"))
+                    .withBody(regex("(?s).*name=\"raw\\.directory\".*/it.*"
+                            + "name=\"raw\\.asset\\d\"; filename=\"dir1/file3\\.txt\".*"
+                            + "name=\"raw\\.asset\\d\\.filename\".*dir1/file3\\.txt.*"))
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.NO_CONTENT_204.code())
+            );
+
+    // Batch as zip archive
+    client.when(
+            request()
+                    .withMethod("PUT")
+                    .withPath("/it-put-batch")
+                    .withHeader(header("Content-Type", "application/zip"))
+    )
+            .respond(
+                    response()
+                            .withStatusCode(HttpStatusCode.CREATED_201.code())
+            );
+
     // Multiple files POST
     client.when(
             request()